@@ -0,0 +1,82 @@
+/*
+ *  Copyright 2021 ms5984 (Matt) <https://github.com/ms5984>
+ *
+ *  This file is part of MenuMan.
+ *
+ *  MenuMan is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU Lesser General Public License as
+ *  published by the Free Software Foundation, either version 3 of the
+ *  License, or (at your option) any later version.
+ *
+ *  MenuMan is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.github.ms5984.lib.menuman;
+
+import org.bukkit.inventory.ItemStack;
+
+import java.util.ArrayList;
+
+/**
+ * The frames of an animated element and how often they change.
+ * <p>
+ * Created by {@link ElementBuilder#setAnimation(int, ItemStack...)};
+ * frames are rendered once, with the text and lore of the element.
+ * All elements with the same period change frame on the same tick,
+ * driven by one library-wide {@link MenuAnimator}.
+ */
+public final class AnimatedElement {
+    final ItemStack[] frames;
+    final int period;
+
+    /**
+     * Render the frames of an element.
+     *
+     * @param element the element supplying text and lore
+     * @param baseItems an item for each frame
+     * @param period ticks each frame is shown
+     */
+    AnimatedElement(MenuElement element, ItemStack[] baseItems, int period) {
+        this.period = period;
+        this.frames = new ItemStack[baseItems.length];
+        for (int i = 0; i < baseItems.length; ++i) {
+            final MenuElement frame = new MenuElement(baseItems[i]);
+            frame.displayName = element.displayName;
+            frame.lore = (element.lore != null) ? new ArrayList<>(element.lore) : null;
+            frames[i] = frame.getRendered();
+        }
+    }
+
+    /**
+     * Get the frame shown at a tick of the animation clock.
+     *
+     * @param tick animation tick
+     * @return the rendered frame
+     */
+    ItemStack frameAt(long tick) {
+        return frames[(int) ((tick / period) % frames.length)];
+    }
+
+    /**
+     * Get the number of ticks each frame is shown.
+     *
+     * @return period in ticks
+     */
+    public int getPeriod() {
+        return period;
+    }
+
+    /**
+     * Get the number of frames.
+     *
+     * @return number of frames
+     */
+    public int getFrameCount() {
+        return frames.length;
+    }
+}
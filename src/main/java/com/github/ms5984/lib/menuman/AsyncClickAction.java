@@ -0,0 +1,194 @@
+/*
+ *  Copyright 2021 ms5984 (Matt) <https://github.com/ms5984>
+ *
+ *  This file is part of MenuMan.
+ *
+ *  MenuMan is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU Lesser General Public License as
+ *  published by the Free Software Foundation, either version 3 of the
+ *  License, or (at your option) any later version.
+ *
+ *  MenuMan is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.github.ms5984.lib.menuman;
+
+import org.bukkit.Bukkit;
+import org.bukkit.plugin.Plugin;
+import org.bukkit.plugin.java.JavaPlugin;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.logging.Level;
+
+/**
+ * A ClickAction whose work runs off the main thread.
+ * <p>
+ * {@link #onClickAsync(MenuClick)} is run on the shared executor
+ * (virtual threads where available) so slow work, such as a database
+ * lookup, does not stall the server tick. The ClickAction it completes
+ * with is then run back on the main thread to apply any changes to
+ * the menu or player.
+ * <p>
+ * The click itself is always cancelled, as the event is over before
+ * the work completes. While the work runs, further clicks on the
+ * clicked slot or the whole menu can be refused; see {@link Lock}.
+ */
+public abstract class AsyncClickAction implements ClickAction {
+    private static Executor executor;
+    private final Lock lock;
+
+    /**
+     * Create an AsyncClickAction which does not lock the menu.
+     */
+    protected AsyncClickAction() {
+        this(Lock.NONE);
+    }
+
+    /**
+     * Create an AsyncClickAction with a lock mode.
+     *
+     * @param lock what to lock while the work runs
+     */
+    protected AsyncClickAction(@NotNull Lock lock) {
+        this.lock = lock;
+    }
+
+    /**
+     * Create an AsyncClickAction from a function.
+     *
+     * @param lock what to lock while the work runs
+     * @param handler work to run off the main thread
+     * @return a new AsyncClickAction
+     */
+    public static AsyncClickAction of(@NotNull Lock lock, @NotNull Function<MenuClick, CompletableFuture<ClickAction>> handler) {
+        return new AsyncClickAction(lock) {
+            @Override
+            public CompletableFuture<ClickAction> onClickAsync(MenuClick menuClick) {
+                return handler.apply(menuClick);
+            }
+        };
+    }
+
+    /**
+     * Set the executor on which all async click work runs.
+     *
+     * @param executor an Executor
+     */
+    public static synchronized void setExecutor(@NotNull Executor executor) {
+        AsyncClickAction.executor = executor;
+    }
+
+    /**
+     * Get the executor on which all async click work runs.
+     * <p>
+     * Defaults to a virtual thread per task on Java 21+ and a
+     * cached pool of daemon threads otherwise.
+     *
+     * @return the Executor
+     */
+    public static synchronized Executor getExecutor() {
+        if (executor == null) {
+            try {
+                // reflective, as the library targets Java 8
+                executor = (Executor) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+            } catch (ReflectiveOperationException e) {
+                final AtomicInteger threads = new AtomicInteger();
+                executor = Executors.newCachedThreadPool(runnable -> {
+                    final Thread thread = new Thread(runnable, "MenuMan-Async-" + threads.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+            }
+        }
+        return executor;
+    }
+
+    /**
+     * Get what is locked while the work runs.
+     *
+     * @return the lock mode
+     */
+    public Lock getLock() {
+        return lock;
+    }
+
+    /**
+     * Do the work of this action off the main thread.
+     * <p>
+     * Only read from the click here; changes to the menu, its
+     * inventory or the player belong in the returned continuation.
+     * The click has already been retained.
+     *
+     * @param menuClick encapsulation which provides data about the click event
+     * @return a future of a ClickAction to run on the main thread,
+     * or of null for none
+     */
+    public abstract CompletableFuture<ClickAction> onClickAsync(MenuClick menuClick);
+
+    /**
+     * Cancel the click, lock as configured and submit the work.
+     *
+     * @param menuClick encapsulation which provides data about the click event
+     */
+    @Override
+    public final void onClick(MenuClick menuClick) {
+        menuClick.disallowClick();
+        // used after the event, so it must not be reused
+        final MenuClick retained = menuClick.retain();
+        final Menu menu = MenuHolder.findMenu(retained.getInventoryView()).orElse(null);
+        final int lockedSlot;
+        if (menu == null || lock == Lock.NONE) {
+            lockedSlot = Menu.NO_LOCK;
+        } else if (lock == Lock.MENU) {
+            lockedSlot = Menu.MENU_LOCK;
+        } else {
+            lockedSlot = retained.getSlotClicked().map(MenuClick.InventorySlot::getIndex).orElse(Menu.NO_LOCK);
+        }
+        if (menu != null) menu.lock(lockedSlot);
+        final Plugin plugin = (menu != null) ? menu.getRegistry().getPlugin() : JavaPlugin.getProvidingPlugin(AsyncClickAction.class);
+        CompletableFuture.supplyAsync(() -> onClickAsync(retained), getExecutor())
+                .thenCompose(future -> (future != null) ? future : CompletableFuture.completedFuture(null))
+                .whenComplete((continuation, ex) -> {
+                    // the plugin may have been disabled meanwhile
+                    if (!plugin.isEnabled()) return;
+                    Bukkit.getScheduler().runTask(plugin, () -> {
+                        if (menu != null) menu.unlock(lockedSlot);
+                        if (ex != null) {
+                            plugin.getLogger().log(Level.WARNING, "Async click action failed", ex);
+                        } else if (continuation != null) {
+                            continuation.onClick(retained);
+                        }
+                    });
+                });
+    }
+
+    /**
+     * What to lock while the work of an AsyncClickAction runs.
+     * <p>
+     * Clicks on a locked slot are cancelled and run no action.
+     */
+    public enum Lock {
+        /**
+         * Lock nothing.
+         */
+        NONE,
+        /**
+         * Lock the clicked slot.
+         */
+        SLOT,
+        /**
+         * Lock every slot of the menu.
+         */
+        MENU,
+    }
+}
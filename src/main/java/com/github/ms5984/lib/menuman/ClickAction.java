@@ -19,10 +19,18 @@
 package com.github.ms5984.lib.menuman;
 
 import org.bukkit.Bukkit;
-import org.bukkit.plugin.java.JavaPlugin;
-import org.bukkit.scheduler.BukkitRunnable;
+import org.bukkit.Server;
+import org.bukkit.command.Command;
+import org.bukkit.command.CommandMap;
+import org.bukkit.command.PluginIdentifiableCommand;
+import org.bukkit.entity.Player;
 import org.jetbrains.annotations.NotNull;
 
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+
 /**
  * Functional interface which defines behavior on use of a Menu's actions.
  */
@@ -40,27 +48,78 @@ public interface ClickAction {
      * <p>
      * Note: closeInventory() <b>must</b> be called from a scheduled task;
      * see {@link org.bukkit.event.inventory.InventoryClickEvent} for more
-     * information.
+     * information. Closes requested during a tick are run together on
+     * the next tick, once per player.
      *
      * @param menuClick encapsulation which provides data about the click event
      */
     static void close(MenuClick menuClick) {
         // closeInventory must not be called from InventoryClickEvent handler
-        new BukkitRunnable() {
-            @Override
-            public void run() {
-                // task called on next tick
-                menuClick.player.closeInventory();
+        final Player player = menuClick.player;
+        DeferredActions.get().defer(null, player, player::closeInventory);
+    }
+
+    /**
+     * Create an action which opens another Menu.
+     * <p>
+     * The menu is opened on the next tick, along with every other
+     * deferred open or close; only the latest request of each
+     * player is run.
+     *
+     * @param menu the Menu to open
+     * @return a new ClickAction
+     */
+    static ClickAction openMenu(@NotNull Menu menu) {
+        return menuClick -> {
+            final Player player = menuClick.player;
+            DeferredActions.get().defer(menu.getRegistry().getPlugin(), player, () -> menu.open(player));
+        };
+    }
+
+    /**
+     * Create an action which shows another Menu in place of the
+     * clicked one.
+     * <p>
+     * See {@link Menu#switchTo(Player, Menu)}: a menu of the same
+     * rows and title is swapped into the open window without
+     * closing it; any other menu is opened on the next tick.
+     *
+     * @param menu the Menu to show
+     * @return a new ClickAction
+     */
+    static ClickAction switchTo(@NotNull Menu menu) {
+        return menuClick -> {
+            final Player player = menuClick.player;
+            final Menu current = MenuHolder.findMenu(menuClick.getInventoryView()).orElse(null);
+            if (current != null) {
+                current.switchTo(player, menu);
+            } else {
+                DeferredActions.get().defer(menu.getRegistry().getPlugin(), player, () -> menu.open(player));
             }
-        }.runTask(JavaPlugin.getProvidingPlugin(ClickAction.class));
+        };
     }
 
     /**
      * Easily run a command, closing the menu afterward by default.
      * <p>
-     * See {@link RunCommand#closeOnClick()}.
+     * In {@link RunCommand.DispatchMode#DIRECT} mode the command may
+     * contain the placeholders <code>{player}</code>, <code>{uuid}</code>
+     * and <code>{world}</code>, which are filled from the clicking player.
+     * <p>
+     * See {@link RunCommand#closeOnClick()} and
+     * {@link RunCommand#dispatchMode()}.
      */
     abstract class RunCommand implements ClickAction {
+        // how long a command which was not found is not looked up again
+        private static final long RETRY_NANOS = TimeUnit.SECONDS.toNanos(5);
+        private static Class<?> serverClass;
+        private static Method commandMapGetter;
+        private long missedAt;
+        private String[] resolvedArgs;
+        private int[] templatedArgs;
+        private Command resolvedCommand;
+        private String resolvedLabel;
+        private boolean resolved;
 
         /**
          * Dispatches the command specified for the player who clicked.
@@ -71,12 +130,36 @@ public interface ClickAction {
          */
         @Override
         public void onClick(MenuClick menuClick) {
-            Bukkit.dispatchCommand(menuClick.player, commandToRun());
+            final Player player = menuClick.player;
+            if (dispatchMode() == DispatchMode.DIRECT) {
+                if (!resolved || isStale()) resolve();
+                if (resolvedCommand != null) {
+                    final String[] args = resolvedArgs.clone();
+                    for (int i : templatedArgs) {
+                        args[i] = fill(args[i], player);
+                    }
+                    try {
+                        resolvedCommand.execute(player, resolvedLabel, args);
+                    } catch (RuntimeException e) {
+                        Bukkit.getLogger().log(Level.SEVERE, "Unhandled exception executing command '" + resolvedLabel + "'", e);
+                    }
+                } else {
+                    // not found; let the server report it
+                    Bukkit.dispatchCommand(player, fill(commandToRun(), player));
+                }
+            } else {
+                Bukkit.dispatchCommand(player, commandToRun());
+            }
             if (closeOnClick()) close(menuClick);
         }
 
         /**
          * Specify the command to run. The command should be prefixed with "/".
+         * <p>
+         * In {@link DispatchMode#DIRECT} mode this is only read
+         * on the first click and again if the command is
+         * unregistered or its plugin is disabled. A command which
+         * was not found is looked up again after a few seconds.
          *
          * @return command string that will be dispatched on clicking
          */
@@ -92,5 +175,119 @@ public interface ClickAction {
         public boolean closeOnClick() {
             return true;
         }
+
+        /**
+         * Configure how the command is run.
+         * <p>
+         * Defaults to {@link DispatchMode#DISPATCH}.
+         *
+         * @return the DispatchMode of this action
+         */
+        public DispatchMode dispatchMode() {
+            return DispatchMode.DISPATCH;
+        }
+
+        /**
+         * Check if the resolved command should be looked up again:
+         * it was not found a while ago, was unregistered or its plugin
+         * was disabled.
+         *
+         * @return true if the command must be resolved again
+         */
+        private boolean isStale() {
+            if (resolvedCommand == null) return System.nanoTime() - missedAt >= RETRY_NANOS;
+            if (!resolvedCommand.isRegistered()) return true;
+            return resolvedCommand instanceof PluginIdentifiableCommand
+                    && !((PluginIdentifiableCommand) resolvedCommand).getPlugin().isEnabled();
+        }
+
+        /**
+         * Find the command and split its arguments.
+         */
+        private void resolve() {
+            resolved = true;
+            String line = commandToRun().trim();
+            if (line.startsWith("/")) line = line.substring(1);
+            final String[] parts = line.split(" +");
+            resolvedLabel = parts[0];
+            resolvedArgs = Arrays.copyOfRange(parts, 1, parts.length);
+            int templated = 0;
+            final int[] indexes = new int[resolvedArgs.length];
+            for (int i = 0; i < resolvedArgs.length; ++i) {
+                if (resolvedArgs[i].indexOf('{') >= 0) indexes[templated++] = i;
+            }
+            templatedArgs = Arrays.copyOf(indexes, templated);
+            resolvedCommand = findCommand(resolvedLabel);
+            if (resolvedCommand == null) missedAt = System.nanoTime();
+        }
+
+        /**
+         * Look a command up in the server's command map, falling
+         * back to plugin commands.
+         *
+         * @param label command label
+         * @return the Command or null if not found
+         */
+        private static Command findCommand(String label) {
+            final Server server = Bukkit.getServer();
+            final Method getter = commandMapGetter(server);
+            if (getter != null) {
+                try {
+                    final Object commandMap = getter.invoke(server);
+                    if (commandMap instanceof CommandMap) {
+                        final Command command = ((CommandMap) commandMap).getCommand(label);
+                        if (command != null) return command;
+                    }
+                } catch (ReflectiveOperationException | RuntimeException ignored) {
+                    // fall back to plugin commands
+                }
+            }
+            return Bukkit.getPluginCommand(label);
+        }
+
+        /**
+         * Get the server's command map getter, looked up once.
+         *
+         * @param server the server
+         * @return the getter or null if the server has none
+         */
+        private static Method commandMapGetter(Server server) {
+            if (server.getClass() != serverClass) {
+                serverClass = server.getClass();
+                try {
+                    // not part of the API, but present on every implementation
+                    commandMapGetter = serverClass.getMethod("getCommandMap");
+                } catch (NoSuchMethodException | RuntimeException e) {
+                    commandMapGetter = null;
+                }
+            }
+            return commandMapGetter;
+        }
+
+        private static String fill(String text, Player player) {
+            if (text.indexOf('{') < 0) return text;
+            // only look up what is used
+            if (text.contains("{player}")) text = text.replace("{player}", player.getName());
+            if (text.contains("{uuid}")) text = text.replace("{uuid}", player.getUniqueId().toString());
+            if (text.contains("{world}")) text = text.replace("{world}", player.getWorld().getName());
+            return text;
+        }
+
+        /**
+         * How a {@link RunCommand} runs its command.
+         */
+        public enum DispatchMode {
+            /**
+             * Dispatch the full command line through the server
+             * on every click, as is.
+             */
+            DISPATCH,
+            /**
+             * Resolve the command and split its arguments on the
+             * first click, then execute it directly, filling in
+             * player placeholders.
+             */
+            DIRECT,
+        }
     }
 }
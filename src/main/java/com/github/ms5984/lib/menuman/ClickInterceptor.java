@@ -0,0 +1,43 @@
+/*
+ *  Copyright 2021 ms5984 (Matt) <https://github.com/ms5984>
+ *
+ *  This file is part of MenuMan.
+ *
+ *  MenuMan is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU Lesser General Public License as
+ *  published by the Free Software Foundation, either version 3 of the
+ *  License, or (at your option) any later version.
+ *
+ *  MenuMan is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.github.ms5984.lib.menuman;
+
+/**
+ * Functional interface which runs before the ClickAction of a slot,
+ * for shared concerns such as permission checks, cooldowns, logging
+ * or sounds.
+ * <p>
+ * Interceptors can be registered for all menus of a plugin
+ * ({@link MenuRegistry#addInterceptor(ClickInterceptor)}), per menu
+ * ({@link MenuBuilder#addInterceptor(ClickInterceptor)}) and per
+ * element ({@link ElementBuilder#addInterceptor(ClickInterceptor)}),
+ * and run in that order. The chains are flattened into one array per
+ * slot when a menu is created. Interceptors only run for slots which
+ * have an action.
+ */
+@FunctionalInterface
+public interface ClickInterceptor {
+    /**
+     * Inspect a click before its action runs.
+     *
+     * @param menuClick encapsulation which provides data about the click event
+     * @return true to continue; false to stop the chain and skip the action
+     */
+    boolean intercept(MenuClick menuClick);
+}
@@ -0,0 +1,190 @@
+/*
+ *  Copyright 2021 ms5984 (Matt) <https://github.com/ms5984>
+ *
+ *  This file is part of MenuMan.
+ *
+ *  MenuMan is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU Lesser General Public License as
+ *  published by the Free Software Foundation, either version 3 of the
+ *  License, or (at your option) any later version.
+ *
+ *  MenuMan is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.github.ms5984.lib.menuman;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Limits how fast each player may click a menu or slot.
+ * <p>
+ * Uses a token bucket (in its single-value GCRA form): each player
+ * may click <code>burst</code> times at once, then once per interval.
+ * Excess clicks are cancelled before any action runs. The state is one
+ * long per player (and slot) in an open-addressing primitive map; a
+ * ClickThrottle keeps its own state, so share one instance to share
+ * the limit across menus or slots.
+ * <p><b>Not</b> async safe.
+ */
+public final class ClickThrottle {
+    private static final long EMPTY = Long.MIN_VALUE;
+    private final long intervalNanos;
+    private final long toleranceNanos;
+    private long[] keys;
+    private long[] arrivals;
+    private int size;
+
+    private ClickThrottle(long intervalNanos, int burst) {
+        this.intervalNanos = intervalNanos;
+        this.toleranceNanos = intervalNanos * (burst - 1);
+        this.keys = new long[16];
+        this.arrivals = new long[16];
+        Arrays.fill(keys, EMPTY);
+    }
+
+    /**
+     * Create a throttle allowing one click per interval.
+     * <p>
+     * Acts as a debounce: clicks closer together than the
+     * interval are cancelled.
+     *
+     * @param interval minimum time between clicks
+     * @param unit unit of the interval
+     * @return a new ClickThrottle
+     * @throws IllegalArgumentException if interval is not positive
+     */
+    public static ClickThrottle minInterval(long interval, TimeUnit unit) throws IllegalArgumentException {
+        return of(interval, unit, 1);
+    }
+
+    /**
+     * Create a throttle allowing bursts of clicks at a sustained rate.
+     *
+     * @param interval time to regain one click
+     * @param unit unit of the interval
+     * @param burst number of clicks allowed at once
+     * @return a new ClickThrottle
+     * @throws IllegalArgumentException if interval or burst is not positive
+     */
+    public static ClickThrottle of(long interval, TimeUnit unit, int burst) throws IllegalArgumentException {
+        if (interval <= 0) throw new IllegalArgumentException("Interval must be positive!");
+        if (burst <= 0) throw new IllegalArgumentException("Burst must be positive!");
+        return new ClickThrottle(unit.toNanos(interval), burst);
+    }
+
+    /**
+     * Check a click against this throttle and record it if allowed.
+     *
+     * @param entityId entity id of the clicking player
+     * @param slot clicked slot or -1 for the whole menu
+     * @return true if the click is allowed
+     */
+    boolean tryAcquire(int entityId, int slot) {
+        return tryAcquire(entityId, slot, System.nanoTime());
+    }
+
+    /**
+     * Check a click at a given time without recording it.
+     * <p>
+     * Lets a click be checked against several throttles before
+     * any of them counts it.
+     *
+     * @param entityId entity id of the clicking player
+     * @param slot clicked slot or -1 for the whole menu
+     * @param now current time in nanoseconds
+     * @return true if the click would be allowed
+     */
+    boolean peek(int entityId, int slot, long now) {
+        final int index = indexOf(key(entityId, slot));
+        return keys[index] == EMPTY || Math.max(arrivals[index], now) - now <= toleranceNanos;
+    }
+
+    /**
+     * Check a click at a given time.
+     *
+     * @param entityId entity id of the clicking player
+     * @param slot clicked slot or -1 for the whole menu
+     * @param now current time in nanoseconds
+     * @return true if the click is allowed
+     */
+    boolean tryAcquire(int entityId, int slot, long now) {
+        final long key = key(entityId, slot);
+        int index = indexOf(key);
+        if (keys[index] != EMPTY) {
+            final long arrival = Math.max(arrivals[index], now);
+            // too far ahead of its allowance
+            if (arrival - now > toleranceNanos) return false;
+            arrivals[index] = arrival + intervalNanos;
+            return true;
+        }
+        if ((size + 1) * 4 > keys.length * 3) {
+            grow(now);
+            index = indexOf(key);
+        }
+        keys[index] = key;
+        arrivals[index] = now + intervalNanos;
+        ++size;
+        return true;
+    }
+
+    /**
+     * Get the number of players (and slots) tracked.
+     *
+     * @return number of entries
+     */
+    int trackedCount() {
+        return size;
+    }
+
+    private static long key(int entityId, int slot) {
+        return ((long) entityId << 32) | (slot & 0xFFFFFFFFL);
+    }
+
+    private int indexOf(long key) {
+        final int mask = keys.length - 1;
+        int index = (int) (mix(key) & mask);
+        while (keys[index] != EMPTY && keys[index] != key) {
+            index = (index + 1) & mask;
+        }
+        return index;
+    }
+
+    private static long mix(long key) {
+        key *= 0x9E3779B97F4A7C15L;
+        return key ^ (key >>> 32);
+    }
+
+    /**
+     * Rehash, dropping entries whose limit has fully recovered;
+     * only doubles when live entries still fill the table.
+     *
+     * @param now current time in nanoseconds
+     */
+    private void grow(long now) {
+        final long[] oldKeys = keys;
+        final long[] oldArrivals = arrivals;
+        int live = 0;
+        for (int i = 0; i < oldKeys.length; ++i) {
+            if (oldKeys[i] != EMPTY && oldArrivals[i] > now) ++live;
+        }
+        int capacity = oldKeys.length;
+        if ((live + 1) * 2 > capacity) capacity *= 2;
+        keys = new long[capacity];
+        arrivals = new long[capacity];
+        Arrays.fill(keys, EMPTY);
+        size = 0;
+        for (int i = 0; i < oldKeys.length; ++i) {
+            if (oldKeys[i] == EMPTY || oldArrivals[i] <= now) continue;
+            final int index = indexOf(oldKeys[i]);
+            keys[index] = oldKeys[i];
+            arrivals[index] = oldArrivals[i];
+            ++size;
+        }
+    }
+}
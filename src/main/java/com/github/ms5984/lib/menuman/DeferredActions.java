@@ -0,0 +1,138 @@
+/*
+ *  Copyright 2021 ms5984 (Matt) <https://github.com/ms5984>
+ *
+ *  This file is part of MenuMan.
+ *
+ *  MenuMan is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU Lesser General Public License as
+ *  published by the Free Software Foundation, either version 3 of the
+ *  License, or (at your option) any later version.
+ *
+ *  MenuMan is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.github.ms5984.lib.menuman;
+
+import org.bukkit.Bukkit;
+import org.bukkit.entity.Player;
+import org.bukkit.plugin.Plugin;
+import org.bukkit.plugin.java.JavaPlugin;
+
+import java.util.LinkedHashMap;
+import java.util.UUID;
+import java.util.logging.Level;
+
+/**
+ * Library-wide queue of player actions which must not run inside an
+ * inventory event, such as closing or opening a menu.
+ * <p>
+ * Actions requested during a tick are collected and run together in
+ * a single task on the next tick. Each player has at most one pending
+ * action; a newer request replaces the older one (a close followed by
+ * an open just opens).
+ * <p><b>Not</b> async safe.
+ */
+final class DeferredActions implements Runnable {
+    private static final DeferredActions INSTANCE = new DeferredActions();
+    private LinkedHashMap<UUID, Deferred> pending = new LinkedHashMap<>();
+    private LinkedHashMap<UUID, Deferred> draining = new LinkedHashMap<>();
+    private final LibraryTask task = new LibraryTask(this, false);
+    private Plugin providingPlugin;
+
+    private DeferredActions() {}
+
+    /**
+     * Get the library-wide queue.
+     *
+     * @return the DeferredActions
+     */
+    static DeferredActions get() {
+        return INSTANCE;
+    }
+
+    /**
+     * Run an action for a player on the next tick.
+     * <p>
+     * Replaces any action already pending for the player.
+     *
+     * @param plugin plugin to schedule under or null for the
+     *               plugin providing the library
+     * @param player the player the action is for
+     * @param action an action
+     */
+    void defer(Plugin plugin, Player player, Runnable action) {
+        final Plugin requester = (plugin != null) ? plugin : providingPlugin();
+        pending.put(player.getUniqueId(), new Deferred(requester, action));
+        task.start(requester);
+    }
+
+    /**
+     * Get the number of actions waiting for the next tick.
+     *
+     * @return number of pending actions
+     */
+    int getPending() {
+        return pending.size();
+    }
+
+    /**
+     * Run every pending action.
+     */
+    @Override
+    public void run() {
+        // actions may defer again; those run on the following tick
+        task.ran();
+        final LinkedHashMap<UUID, Deferred> toRun = pending;
+        pending = draining;
+        draining = toRun;
+        for (Deferred deferred : toRun.values()) {
+            try {
+                deferred.action.run();
+            } catch (RuntimeException e) {
+                Bukkit.getLogger().log(Level.WARNING, "Deferred menu action failed", e);
+            }
+        }
+        toRun.clear();
+    }
+
+    /**
+     * Handle the disable of a plugin.
+     * <p>
+     * Drops the actions the plugin requested and moves the task
+     * to another plugin if the disabled one owned it.
+     *
+     * @param plugin a disabled plugin
+     */
+    void onDisable(Plugin plugin) {
+        if (providingPlugin == plugin) providingPlugin = null;
+        pending.values().removeIf(deferred -> deferred.plugin == plugin);
+        task.handOff(plugin, pending.isEmpty() ? null : pending.values().iterator().next().plugin);
+    }
+
+    /**
+     * Get the plugin providing the library, looked up once.
+     *
+     * @return the providing plugin
+     */
+    private Plugin providingPlugin() {
+        if (providingPlugin == null || !providingPlugin.isEnabled()) {
+            providingPlugin = JavaPlugin.getProvidingPlugin(DeferredActions.class);
+        }
+        return providingPlugin;
+    }
+
+    private static final class Deferred {
+        final Plugin plugin;
+        final Runnable action;
+
+        Deferred(Plugin plugin, Runnable action) {
+            this.plugin = plugin;
+            this.action = action;
+        }
+    }
+}
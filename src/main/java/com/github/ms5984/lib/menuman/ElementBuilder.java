@@ -18,11 +18,13 @@
  */
 package com.github.ms5984.lib.menuman;
 
+import org.bukkit.event.inventory.ClickType;
 import org.bukkit.inventory.ItemStack;
 import org.jetbrains.annotations.NotNull;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
 
 /**
  * Fluent interface builder for menu elements
@@ -31,6 +33,11 @@ public final class ElementBuilder {
     private final MenuBuilder menuBuilder;
     private final MenuElement menuElement;
     private ClickAction menuAction;
+    private ClickAction[] typedActions;
+    private ClickThrottle clickThrottle;
+    private final List<ClickInterceptor> interceptors = new ArrayList<>();
+    private ItemStack[] animationFrames;
+    private int animationPeriod;
 
     /**
      * Create an {@link ElementBuilder} for a MenuBuilder with a MenuElement.
@@ -54,6 +61,146 @@ public final class ElementBuilder {
         return this;
     }
 
+    /**
+     * Set an action for one type of click on this element.
+     * <p>
+     * Takes precedence over the action set with
+     * {@link #setAction(ClickAction)}, which still runs for
+     * click types without their own action.
+     *
+     * @param clickType a ClickType
+     * @param clickAction which accepts MenuClick or null to remove
+     * @return this builder
+     */
+    public ElementBuilder setAction(@NotNull ClickType clickType, ClickAction clickAction) {
+        if (typedActions == null) typedActions = new ClickAction[ClickType.values().length];
+        typedActions[clickType.ordinal()] = clickAction;
+        return this;
+    }
+
+    /**
+     * Set an action for left clicks on this element.
+     *
+     * @param clickAction which accepts MenuClick
+     * @return this builder
+     */
+    public ElementBuilder onLeftClick(ClickAction clickAction) {
+        return setAction(ClickType.LEFT, clickAction);
+    }
+
+    /**
+     * Set an action for right clicks on this element.
+     *
+     * @param clickAction which accepts MenuClick
+     * @return this builder
+     */
+    public ElementBuilder onRightClick(ClickAction clickAction) {
+        return setAction(ClickType.RIGHT, clickAction);
+    }
+
+    /**
+     * Set an action for shift-left clicks on this element.
+     *
+     * @param clickAction which accepts MenuClick
+     * @return this builder
+     */
+    public ElementBuilder onShiftLeftClick(ClickAction clickAction) {
+        return setAction(ClickType.SHIFT_LEFT, clickAction);
+    }
+
+    /**
+     * Set an action for shift-right clicks on this element.
+     *
+     * @param clickAction which accepts MenuClick
+     * @return this builder
+     */
+    public ElementBuilder onShiftRightClick(ClickAction clickAction) {
+        return setAction(ClickType.SHIFT_RIGHT, clickAction);
+    }
+
+    /**
+     * Set an action for middle clicks on this element.
+     *
+     * @param clickAction which accepts MenuClick
+     * @return this builder
+     */
+    public ElementBuilder onMiddleClick(ClickAction clickAction) {
+        return setAction(ClickType.MIDDLE, clickAction);
+    }
+
+    /**
+     * Set an action for drop key presses on this element.
+     * <p>
+     * Covers both {@link ClickType#DROP} and {@link ClickType#CONTROL_DROP}.
+     *
+     * @param clickAction which accepts MenuClick
+     * @return this builder
+     */
+    public ElementBuilder onDrop(ClickAction clickAction) {
+        return setAction(ClickType.DROP, clickAction).setAction(ClickType.CONTROL_DROP, clickAction);
+    }
+
+    /**
+     * Set an action for number key presses on this element.
+     * <p>
+     * Use {@link MenuClick#getHotbarButton()} for the key pressed.
+     *
+     * @param clickAction which accepts MenuClick
+     * @return this builder
+     */
+    public ElementBuilder onNumberKey(ClickAction clickAction) {
+        return setAction(ClickType.NUMBER_KEY, clickAction);
+    }
+
+    /**
+     * Limit how fast each player may click this element.
+     * <p>
+     * Each slot of the element is limited separately.
+     * Clicks over the limit are cancelled and run no action.
+     *
+     * @param throttle a ClickThrottle or null for none
+     * @return this builder
+     */
+    public ElementBuilder setClickThrottle(ClickThrottle throttle) {
+        this.clickThrottle = throttle;
+        return this;
+    }
+
+    /**
+     * Add an interceptor which runs before the action of this element.
+     * <p>
+     * Runs after plugin-wide and menu interceptors.
+     *
+     * @param interceptor a ClickInterceptor
+     * @return this builder
+     */
+    public ElementBuilder addInterceptor(@NotNull ClickInterceptor interceptor) {
+        interceptors.add(interceptor);
+        return this;
+    }
+
+    /**
+     * Animate this element by cycling through items.
+     * <p>
+     * Each frame is styled with the element's text and lore and is
+     * shown for the given number of ticks; the first frame also
+     * becomes the base item. Frames only change while the menu has
+     * viewers. Updates or overrides of an animated slot are replaced
+     * by its next frame.
+     *
+     * @param periodTicks ticks each frame is shown
+     * @param frames an item for each frame
+     * @return this builder
+     * @throws IllegalArgumentException if periodTicks &lt; 1 or no frames are given
+     */
+    public ElementBuilder setAnimation(int periodTicks, @NotNull ItemStack... frames) throws IllegalArgumentException {
+        if (periodTicks < 1) throw new IllegalArgumentException("Period must be at least one tick!");
+        if (frames.length == 0) throw new IllegalArgumentException("An animation needs at least one frame!");
+        this.animationFrames = frames.clone();
+        this.animationPeriod = periodTicks;
+        return setItem(frames[0]);
+    }
+
     /**
      * Set a new base item for this element.
      *
@@ -62,6 +209,7 @@ public final class ElementBuilder {
      */
     public ElementBuilder setItem(@NotNull ItemStack itemStack) {
         this.menuElement.baseItem = itemStack;
+        this.menuElement.invalidate();
         return this;
     }
 
@@ -73,6 +221,7 @@ public final class ElementBuilder {
      */
     public ElementBuilder setText(String text) {
         this.menuElement.displayName = text;
+        this.menuElement.invalidate();
         return this;
     }
 
@@ -85,9 +234,11 @@ public final class ElementBuilder {
     public ElementBuilder setLore(String... lore) {
         if (lore == null) {
             this.menuElement.lore = null;
+            this.menuElement.invalidate();
             return this;
         }
         this.menuElement.lore = new ArrayList<>(Arrays.asList(lore));
+        this.menuElement.invalidate();
         return this;
     }
 
@@ -100,6 +251,7 @@ public final class ElementBuilder {
     public ElementBuilder addLore(@NotNull String line) {
         if (this.menuElement.lore == null) this.menuElement.lore = new ArrayList<>();
         this.menuElement.lore.add(line);
+        this.menuElement.invalidate();
         return this;
     }
 
@@ -113,12 +265,46 @@ public final class ElementBuilder {
      * @throws IllegalArgumentException if any int outside of inventory range
      */
     public MenuBuilder assignToSlots(int... slots) throws IllegalArgumentException {
-        for (int slot : slots) {
-            if (slot >= menuBuilder.numberOfRows.slotCount) throw new IllegalArgumentException("That is not a valid slot!");
-            if (slot < 0) throw new IllegalArgumentException("That is not a valid slot!");
+        return assignTo(SlotSet.of(slots));
+    }
+
+    /**
+     * Assign this element to a set of slots of the menu.
+     *
+     * @param slots a SlotSet of desired slots
+     * @return the MenuBuilder
+     * @throws IllegalArgumentException if any slot outside of inventory range
+     */
+    public MenuBuilder assignTo(@NotNull SlotSet slots) throws IllegalArgumentException {
+        if (slots.last() >= menuBuilder.numberOfRows.slotCount) throw new IllegalArgumentException("That is not a valid slot!");
+        // one chain shared by every slot of the element
+        final ClickAction[] byType = (typedActions != null) ? typedActions.clone() : null;
+        final ClickInterceptor[] chain = interceptors.isEmpty() ? null : interceptors.toArray(new ClickInterceptor[0]);
+        final AnimatedElement animation = (animationFrames != null) ? new AnimatedElement(menuElement, animationFrames, animationPeriod) : null;
+        slots.forEach(slot -> {
             menuBuilder.items.put(slot, menuElement);
             menuBuilder.actions.put(slot, menuAction);
-        }
+            if (clickThrottle != null) {
+                menuBuilder.throttles.put(slot, clickThrottle);
+            } else {
+                menuBuilder.throttles.remove(slot);
+            }
+            if (byType != null) {
+                menuBuilder.typedActions.put(slot, byType);
+            } else {
+                menuBuilder.typedActions.remove(slot);
+            }
+            if (chain != null) {
+                menuBuilder.slotInterceptors.put(slot, chain);
+            } else {
+                menuBuilder.slotInterceptors.remove(slot);
+            }
+            if (animation != null) {
+                menuBuilder.animations.put(slot, animation);
+            } else {
+                menuBuilder.animations.remove(slot);
+            }
+        });
         return menuBuilder;
     }
 }
@@ -64,6 +64,7 @@ public final class FillerBuilder {
      */
     public FillerBuilder setItem(@NotNull ItemStack itemStack) {
         this.menuElement.baseItem = itemStack;
+        this.menuElement.invalidate();
         return this;
     }
 
@@ -75,6 +76,7 @@ public final class FillerBuilder {
      */
     public FillerBuilder setText(String text) {
         this.menuElement.displayName = text;
+        this.menuElement.invalidate();
         return this;
     }
 
@@ -87,9 +89,11 @@ public final class FillerBuilder {
     public FillerBuilder setLore(String... lore) {
         if (lore == null) {
             this.menuElement.lore = null;
+            this.menuElement.invalidate();
             return this;
         }
         this.menuElement.lore = new ArrayList<>(Arrays.asList(lore));
+        this.menuElement.invalidate();
         return this;
     }
 
@@ -102,6 +106,7 @@ public final class FillerBuilder {
     public FillerBuilder addLore(@NotNull String line) {
         if (this.menuElement.lore == null) this.menuElement.lore = new ArrayList<>();
         this.menuElement.lore.add(line);
+        this.menuElement.invalidate();
         return this;
     }
 
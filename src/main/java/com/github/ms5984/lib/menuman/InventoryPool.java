@@ -0,0 +1,238 @@
+/*
+ *  Copyright 2021 ms5984 (Matt) <https://github.com/ms5984>
+ *
+ *  This file is part of MenuMan.
+ *
+ *  MenuMan is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU Lesser General Public License as
+ *  published by the Free Software Foundation, either version 3 of the
+ *  License, or (at your option) any later version.
+ *
+ *  MenuMan is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.github.ms5984.lib.menuman;
+
+import org.bukkit.Bukkit;
+import org.bukkit.inventory.Inventory;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+/**
+ * A bounded pool of cleared menu inventories.
+ * <p>
+ * Menus built with {@link MenuBuilder#setPooledInventories(boolean)}
+ * borrow their Inventory from the pool of their registry when first
+ * opened and return it once it is released, instead of creating a new
+ * Inventory each time. Inventories are keyed by row count and title,
+ * as neither can change after creation.
+ * <p>
+ * The pool is bounded per key and in total. Once full, an inventory
+ * of the least recently used key is dropped to make room; keys are
+ * forgotten as soon as they hold no inventory.
+ * <p><b>Not</b> async safe.
+ */
+public final class InventoryPool {
+    /**
+     * Default maximum of idle inventories kept per row count and title.
+     */
+    public static final int DEFAULT_MAX_PER_KEY = 8;
+    /**
+     * Default maximum of idle inventories kept in total.
+     */
+    public static final int DEFAULT_MAX_TOTAL = 64;
+    // access-ordered: the first key is the least recently used
+    private final LinkedHashMap<Key, ArrayDeque<MenuHolder>> idle = new LinkedHashMap<>(16, 0.75f, true);
+    private int maxPerKey = DEFAULT_MAX_PER_KEY;
+    private int maxTotal = DEFAULT_MAX_TOTAL;
+    private int pooled;
+    private long hits;
+    private long misses;
+
+    /**
+     * Create an empty pool.
+     */
+    InventoryPool() {}
+
+    /**
+     * Set the maximum number of idle inventories kept for
+     * each row count and title.
+     * <p>
+     * Inventories returned once the limit is reached are dropped.
+     *
+     * @param maxPerKey maximum idle inventories per key
+     * @throws IllegalArgumentException if maxPerKey is negative
+     */
+    public void setMaxPerKey(int maxPerKey) throws IllegalArgumentException {
+        if (maxPerKey < 0) throw new IllegalArgumentException("Pool size cannot be negative!");
+        this.maxPerKey = maxPerKey;
+    }
+
+    /**
+     * Set the maximum number of idle inventories kept in total.
+     * <p>
+     * Inventories of the least recently used keys are dropped
+     * to stay within the limit.
+     *
+     * @param maxTotal maximum idle inventories
+     * @throws IllegalArgumentException if maxTotal is negative
+     */
+    public void setMaxTotal(int maxTotal) throws IllegalArgumentException {
+        if (maxTotal < 0) throw new IllegalArgumentException("Pool size cannot be negative!");
+        this.maxTotal = maxTotal;
+        while (pooled > maxTotal) evictEldest();
+    }
+
+    /**
+     * Get the number of inventories handed out from the pool.
+     *
+     * @return number of pool hits
+     */
+    public long getHits() {
+        return hits;
+    }
+
+    /**
+     * Get the number of inventories which had to be created.
+     *
+     * @return number of pool misses
+     */
+    public long getMisses() {
+        return misses;
+    }
+
+    /**
+     * Get the number of idle inventories currently pooled.
+     *
+     * @return number of pooled inventories
+     */
+    public int getPooledCount() {
+        return pooled;
+    }
+
+    /**
+     * Get the number of row count and title keys holding inventories.
+     *
+     * @return number of keys
+     */
+    int getKeyCount() {
+        return idle.size();
+    }
+
+    /**
+     * Drop all idle inventories.
+     */
+    public void clear() {
+        idle.clear();
+        pooled = 0;
+    }
+
+    /**
+     * Get an inventory for a menu, reusing an idle one if possible.
+     * <p>
+     * The holder of the inventory is bound to the menu.
+     *
+     * @param menu a Menu without an inventory
+     * @return a holder with an empty inventory
+     */
+    MenuHolder borrow(Menu menu) {
+        final Key key = new Key(menu.numberOfRows, menu.title);
+        final ArrayDeque<MenuHolder> queue = idle.get(key);
+        if (queue != null) {
+            ++hits;
+            --pooled;
+            final MenuHolder holder = queue.pop();
+            if (queue.isEmpty()) idle.remove(key);
+            holder.bind(menu);
+            return holder;
+        }
+        ++misses;
+        return create(menu);
+    }
+
+    /**
+     * Return the released inventory of a menu to the pool.
+     * <p>
+     * The inventory is unbound from the menu and, if kept,
+     * cleared.
+     *
+     * @param holder the holder of an inventory without viewers
+     */
+    void giveBack(MenuHolder holder) {
+        final Menu menu = holder.getMenu();
+        holder.bind(null);
+        if (maxTotal == 0) return;
+        final Key key = new Key(menu.numberOfRows, menu.title);
+        ArrayDeque<MenuHolder> queue = idle.get(key);
+        if ((queue != null ? queue.size() : 0) >= maxPerKey) return;
+        if (pooled >= maxTotal) {
+            evictEldest();
+            // the key may have been the eldest
+            queue = idle.get(key);
+        }
+        if (queue == null) {
+            queue = new ArrayDeque<>();
+            idle.put(key, queue);
+        }
+        holder.getInventory().clear();
+        queue.push(holder);
+        ++pooled;
+    }
+
+    /**
+     * Drop the oldest inventory of the least recently used key.
+     */
+    private void evictEldest() {
+        final Iterator<ArrayDeque<MenuHolder>> keys = idle.values().iterator();
+        if (!keys.hasNext()) return;
+        final ArrayDeque<MenuHolder> eldest = keys.next();
+        eldest.pollLast();
+        --pooled;
+        if (eldest.isEmpty()) keys.remove();
+    }
+
+    /**
+     * Create a new inventory for a menu.
+     *
+     * @param menu a Menu
+     * @return a holder with a new inventory
+     */
+    static MenuHolder create(Menu menu) {
+        final MenuHolder holder = new MenuHolder(menu);
+        holder.setInventory(Bukkit.createInventory(holder, menu.numberOfRows.slotCount, menu.title));
+        return holder;
+    }
+
+    /**
+     * Row count and title of pooled inventories.
+     */
+    private static final class Key {
+        private final Menu.InventoryRows rows;
+        private final String title;
+
+        private Key(Menu.InventoryRows rows, String title) {
+            this.rows = rows;
+            this.title = title;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Key)) return false;
+            final Key key = (Key) o;
+            return rows == key.rows && title.equals(key.title);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * rows.hashCode() + title.hashCode();
+        }
+    }
+}
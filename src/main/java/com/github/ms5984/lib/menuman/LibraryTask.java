@@ -0,0 +1,115 @@
+/*
+ *  Copyright 2021 ms5984 (Matt) <https://github.com/ms5984>
+ *
+ *  This file is part of MenuMan.
+ *
+ *  MenuMan is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU Lesser General Public License as
+ *  published by the Free Software Foundation, either version 3 of the
+ *  License, or (at your option) any later version.
+ *
+ *  MenuMan is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.github.ms5984.lib.menuman;
+
+import org.bukkit.Bukkit;
+import org.bukkit.plugin.Plugin;
+import org.bukkit.scheduler.BukkitTask;
+
+/**
+ * A library-wide task scheduled under the plugin which first needs it.
+ * <p>
+ * The task is started at most once until it is cancelled (or, for a
+ * one-shot task, until it has run). Bukkit cancels the tasks of a
+ * disabled plugin, so when the owner is disabled the task is handed
+ * to another plugin which still needs it.
+ * <p><b>Not</b> async safe.
+ */
+final class LibraryTask {
+    private final Runnable runnable;
+    private final boolean repeating;
+    private Plugin owner;
+    private BukkitTask task;
+
+    /**
+     * Create a task which is not yet scheduled.
+     *
+     * @param runnable the work of the task
+     * @param repeating true to run every tick until cancelled,
+     *                  false to run once on the next tick
+     */
+    LibraryTask(Runnable runnable, boolean repeating) {
+        this.runnable = runnable;
+        this.repeating = repeating;
+    }
+
+    /**
+     * Schedule the task unless it is already scheduled.
+     *
+     * @param plugin plugin to schedule under
+     */
+    void start(Plugin plugin) {
+        if (owner != null) return;
+        owner = plugin;
+        task = repeating
+                ? Bukkit.getScheduler().runTaskTimer(plugin, runnable, 1L, 1L)
+                : Bukkit.getScheduler().runTask(plugin, runnable);
+    }
+
+    /**
+     * Check if the task is scheduled.
+     *
+     * @return true if scheduled
+     */
+    boolean isScheduled() {
+        return owner != null;
+    }
+
+    /**
+     * Get the plugin the task is scheduled under.
+     *
+     * @return the owner or null if not scheduled
+     */
+    Plugin getOwner() {
+        return owner;
+    }
+
+    /**
+     * Mark a one-shot task as run, so the next start schedules it again.
+     * <p>
+     * Called first thing when the task runs.
+     */
+    void ran() {
+        task = null;
+        owner = null;
+    }
+
+    /**
+     * Cancel the task if it is scheduled.
+     */
+    void cancel() {
+        if (task != null) task.cancel();
+        ran();
+    }
+
+    /**
+     * Hand the task over if its owner was disabled.
+     *
+     * @param plugin a disabled plugin
+     * @param successor plugin to schedule under instead
+     *                  or null if the task is no longer needed
+     * @return true if the disabled plugin owned the task
+     */
+    boolean handOff(Plugin plugin, Plugin successor) {
+        if (owner == null || owner != plugin) return false;
+        cancel();
+        if (successor != null) start(successor);
+        return true;
+    }
+}
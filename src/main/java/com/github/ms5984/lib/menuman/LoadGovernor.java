@@ -0,0 +1,251 @@
+/*
+ *  Copyright 2021 ms5984 (Matt) <https://github.com/ms5984>
+ *
+ *  This file is part of MenuMan.
+ *
+ *  MenuMan is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU Lesser General Public License as
+ *  published by the Free Software Foundation, either version 3 of the
+ *  License, or (at your option) any later version.
+ *
+ *  MenuMan is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.github.ms5984.lib.menuman;
+
+import org.bukkit.plugin.Plugin;
+
+import java.util.Arrays;
+
+/**
+ * Library-wide governor which slows menu updates while the
+ * server is lagging.
+ * <p>
+ * While menus are being updated or animated, the governor times
+ * each tick and keeps a moving average of the tick duration. Once
+ * the average exceeds the tick budget, updates and animation frames
+ * of {@link Priority#LOW} and then {@link Priority#NORMAL} menus
+ * are only sent every few ticks; the more the server lags, the
+ * longer the backoff. Changes made meanwhile are coalesced, not
+ * lost. As the average recovers, the backoff shrinks one tick at
+ * a time. Priorities are set with
+ * {@link MenuBuilder#setUpdatePriority(Priority)}.
+ * <p><b>Not</b> async safe.
+ */
+public final class LoadGovernor {
+    /**
+     * Duration of a tick at full speed, in milliseconds.
+     */
+    public static final double TICK_BUDGET_MILLIS = 50.0;
+    /**
+     * Longest backoff, in ticks.
+     */
+    public static final int MAX_BACKOFF = 20;
+    private static final double SMOOTHING = 0.1;
+    // longer gaps are not ticks of ours (the task was not running)
+    private static final long MAX_SAMPLE_NANOS = 1_000_000_000L;
+    private static final int IDLE_TICKS = 100;
+    private static final Priority[] PRIORITIES = Priority.values();
+    private static final LoadGovernor INSTANCE = new LoadGovernor();
+    private final int[] backoff = new int[PRIORITIES.length];
+    private double averageTickMillis = TICK_BUDGET_MILLIS;
+    private long lastSample = -1L;
+    private long tick;
+    private int idleTicks;
+    private long deferredUpdates;
+    private long skippedFrames;
+    private final LibraryTask task = new LibraryTask(this::tick, true);
+
+    private LoadGovernor() {
+        Arrays.fill(backoff, 1);
+    }
+
+    /**
+     * Get the library-wide governor.
+     *
+     * @return the LoadGovernor
+     */
+    public static LoadGovernor get() {
+        return INSTANCE;
+    }
+
+    /**
+     * Keep timing ticks while menus are being updated.
+     * <p>
+     * Timing stops after a few seconds without a call.
+     *
+     * @param plugin plugin to schedule under
+     */
+    void watch(Plugin plugin) {
+        idleTicks = 0;
+        task.start(plugin);
+    }
+
+    /**
+     * Time the tick which just ended.
+     * <p>
+     * Run by the governor's own task.
+     */
+    void tick() {
+        sample(System.nanoTime());
+        if (++idleTicks > IDLE_TICKS) stop();
+    }
+
+    /**
+     * Record the start of a tick and adjust the backoff.
+     *
+     * @param now {@link System#nanoTime()} at the start of the tick
+     */
+    void sample(long now) {
+        final long elapsed = now - lastSample;
+        if (lastSample >= 0L && elapsed > 0L && elapsed <= MAX_SAMPLE_NANOS) {
+            averageTickMillis += SMOOTHING * (elapsed / 1_000_000.0 - averageTickMillis);
+        }
+        lastSample = now;
+        ++tick;
+        final double load = getLoad();
+        for (Priority priority : PRIORITIES) {
+            final int target = priority.backoffAt(load);
+            final int current = backoff[priority.ordinal()];
+            // back off at once, recover gradually
+            backoff[priority.ordinal()] = (target >= current) ? target : current - 1;
+        }
+    }
+
+    /**
+     * Check if updates of a priority may be sent on this tick.
+     *
+     * @param priority a Priority
+     * @return true if not backed off on this tick
+     */
+    boolean allows(Priority priority) {
+        return tick % backoff[priority.ordinal()] == 0;
+    }
+
+    /**
+     * Count a menu flush postponed by the backoff.
+     */
+    void deferredUpdate() {
+        ++deferredUpdates;
+    }
+
+    /**
+     * Count an animation frame skipped by the backoff.
+     */
+    void skippedFrame() {
+        ++skippedFrames;
+    }
+
+    /**
+     * Get the moving average of the tick duration.
+     *
+     * @return average tick duration in milliseconds
+     */
+    public double getAverageTickMillis() {
+        return averageTickMillis;
+    }
+
+    /**
+     * Get the average tick duration relative to the budget.
+     *
+     * @return 1.0 at full speed, above 1.0 while lagging
+     */
+    public double getLoad() {
+        return averageTickMillis / TICK_BUDGET_MILLIS;
+    }
+
+    /**
+     * Get the current backoff of a priority.
+     *
+     * @param priority a Priority
+     * @return updates are sent every this many ticks (1 = every tick)
+     */
+    public int getBackoff(Priority priority) {
+        return backoff[priority.ordinal()];
+    }
+
+    /**
+     * Get the number of menu flushes postponed by the backoff.
+     *
+     * @return total postponed flushes
+     */
+    public long getDeferredUpdates() {
+        return deferredUpdates;
+    }
+
+    /**
+     * Get the number of animation frames skipped by the backoff.
+     *
+     * @return total skipped frames
+     */
+    public long getSkippedFrames() {
+        return skippedFrames;
+    }
+
+    /**
+     * Handle the disable of a plugin.
+     * <p>
+     * If the disabled plugin owned the task, timing moves to the
+     * plugin now animating or updating menus, or stops if there is
+     * none; it restarts with the next update.
+     * <p>
+     * Called after the animator and updater have handed off their
+     * own tasks.
+     *
+     * @param plugin a disabled plugin
+     */
+    void onDisable(Plugin plugin) {
+        Plugin successor = MenuAnimator.get().getOwner();
+        if (successor == null) successor = MenuUpdater.get().getOwner();
+        // the next tick timed would include the pause
+        if (task.handOff(plugin, successor)) lastSample = -1L;
+    }
+
+    private void stop() {
+        task.cancel();
+        // the next tick timed would include the pause
+        lastSample = -1L;
+    }
+
+    /**
+     * Update priority of a menu.
+     */
+    public enum Priority {
+        /**
+         * Never backed off.
+         */
+        HIGH(Double.POSITIVE_INFINITY, 0.0),
+        /**
+         * Backed off under heavy lag. The default.
+         */
+        NORMAL(1.2, 10.0),
+        /**
+         * Backed off as soon as the server lags.
+         */
+        LOW(1.05, 20.0);
+
+        private final double threshold;
+        private final double steepness;
+
+        Priority(double threshold, double steepness) {
+            this.threshold = threshold;
+            this.steepness = steepness;
+        }
+
+        /**
+         * Get the backoff of this priority at a load.
+         *
+         * @param load average tick duration relative to the budget
+         * @return ticks between updates
+         */
+        int backoffAt(double load) {
+            if (load <= threshold) return 1;
+            return (int) Math.min(MAX_BACKOFF, 1.0 + (load - threshold) * steepness);
+        }
+    }
+}
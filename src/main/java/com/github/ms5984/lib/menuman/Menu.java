@@ -18,11 +18,9 @@
  */
 package com.github.ms5984.lib.menuman;
 
-import org.bukkit.Bukkit;
 import org.bukkit.entity.HumanEntity;
 import org.bukkit.entity.Player;
-import org.bukkit.event.EventHandler;
-import org.bukkit.event.Listener;
+import org.bukkit.event.inventory.ClickType;
 import org.bukkit.event.inventory.InventoryClickEvent;
 import org.bukkit.event.inventory.InventoryCloseEvent;
 import org.bukkit.event.inventory.InventoryDragEvent;
@@ -30,19 +28,22 @@ import org.bukkit.event.inventory.InventoryOpenEvent;
 import org.bukkit.inventory.Inventory;
 import org.bukkit.inventory.ItemStack;
 import org.bukkit.plugin.java.JavaPlugin;
-import org.bukkit.scheduler.BukkitRunnable;
 
 import java.util.*;
-import java.util.stream.Collectors;
+import java.util.function.Consumer;
 
 /**
  * A class representing a created Menu.
  */
 public final class Menu {
-    private final JavaPlugin plugin;
-    private final ItemStack[] initialContents;
-    private final Map<Integer, ItemStack> contents;
-    private final Map<Integer, ClickAction> actions;
+    private final MenuTemplate template;
+    private ItemStack[] frame;
+    private ClickAction[] actions;
+    private ClickAction[][] typedActions;
+    private boolean ownFrame;
+    private boolean ownActions;
+    private SlotSet elementSlots;
+    private SlotSet protectedSlots;
     private final CloseAction closeAction;
     /**
      * Number of rows in the generated Inventory.
@@ -64,7 +65,27 @@ public final class Menu {
      * Defines shift-click behavior on the lower inventory.
      */
     public final boolean allowShiftClickLower;
+    private final MenuRegistry registry;
     private Inventory inventory;
+    private MenuHolder holder;
+    private final ViewerSet viewers = new ViewerSet();
+    /**
+     * Tick at which the reaper releases the inventory; -1 if none is pending.
+     */
+    long releaseDeadline = -1L;
+    private boolean disposed;
+    /**
+     * Lock target which locks nothing.
+     */
+    static final int NO_LOCK = -1;
+    /**
+     * Lock target which locks the whole menu.
+     */
+    static final int MENU_LOCK = -2;
+    private long lockedSlots;
+    private int menuLocks;
+    private long dirtySlots;
+    private Runnable idleListener;
 
     /**
      * Create a new Menu using the data from a builder and a plugin reference.
@@ -73,48 +94,51 @@ public final class Menu {
      * @param javaPlugin your plugin
      */
     protected Menu(MenuBuilder menuBuilder, JavaPlugin javaPlugin) {
-        this.plugin = javaPlugin;
-        this.numberOfRows = menuBuilder.numberOfRows;
-        this.title = (menuBuilder.title != null) ? menuBuilder.title : "Menu#"+hashCode();
-        this.initialContents = (menuBuilder.initialContents == null) ? null : menuBuilder.initialContents;
-        this.cancelClickLower = menuBuilder.cancelLowerInvClick;
-        this.allowPickupFromMenu = menuBuilder.allowItemPickup;
-        this.allowShiftClickLower = menuBuilder.allowLowerInvShiftClick;
-        this.actions = new HashMap<>(menuBuilder.actions);
-        this.closeAction = menuBuilder.closeAction;
-        this.contents = new HashMap<>(numberOfRows.slotCount);
-        menuBuilder.items.forEach((index, element) -> contents.put(index, element.generateComplete()));
-        final ItemStack fillerItem = Optional
-                .ofNullable(menuBuilder.fillerItem)
-                .map(MenuElement::generateComplete)
-                .orElse(null);
-        if (fillerItem != null) {
-            for (int i = 0; i < numberOfRows.slotCount; ++i) {
-                contents.putIfAbsent(i, fillerItem);
-            }
-        }
-        if (menuBuilder.fillerAction != null) {
-            for (int i = 0; i < numberOfRows.slotCount; ++i) {
-                actions.putIfAbsent(i, menuBuilder.fillerAction);
-            }
-        }
-        Bukkit.getPluginManager().registerEvents(new ClickListener(), plugin);
+        this(new MenuTemplate(menuBuilder, javaPlugin), menuBuilder.weakRegistration);
+    }
+
+    /**
+     * Create a new Menu sharing the data of a template.
+     *
+     * @param template a MenuTemplate
+     * @param weak whether to register the menu weakly
+     */
+    Menu(MenuTemplate template, boolean weak) {
+        this.template = template;
+        this.numberOfRows = template.numberOfRows;
+        this.title = template.titleFor(this);
+        this.cancelClickLower = template.cancelClickLower;
+        this.allowPickupFromMenu = template.allowPickupFromMenu;
+        this.allowShiftClickLower = template.allowShiftClickLower;
+        this.closeAction = template.closeAction;
+        this.frame = template.frame;
+        this.actions = template.actions;
+        this.typedActions = template.typedActions;
+        this.elementSlots = template.elementSlots;
+        this.protectedSlots = template.protectedSlots;
+        this.registry = template.registry;
+        registry.register(this, weak);
     }
 
     /**
      * Lazy initialization of inventory on first get.
      * <p>
-     * Added bonus: listener returns faster before getInventory is called.
+     * The inventory is filled with one bulk set of the frame
+     * precomputed at construction, which is reused each time the
+     * inventory is recreated after release. Menus with pooled
+     * inventories borrow an idle one from their registry's
+     * {@link InventoryPool} instead of creating it.
+     * <p>
+     * Added bonus: the registry only routes events to this menu
+     * while its inventory exists.
      *
      * @return generated Inventory
      */
     private Inventory getInventory() {
         if (inventory == null) {
-            inventory = Bukkit.createInventory(null, numberOfRows.slotCount, title);
-            if (initialContents != null) inventory.setContents(initialContents);
-            for (Map.Entry<Integer, ItemStack> element : contents.entrySet()) {
-                inventory.setItem(element.getKey(), element.getValue());
-            }
+            holder = template.pooled ? registry.getInventoryPool().borrow(this) : InventoryPool.create(this);
+            inventory = holder.getInventory();
+            inventory.setContents(frame);
         }
         return inventory;
     }
@@ -123,9 +147,330 @@ public final class Menu {
      * Open this Menu for the given player.
      *
      * @param player player to open menu for
+     * @throws IllegalStateException if this menu has been disposed
      */
     public void open(Player player) {
+        if (disposed) throw new IllegalStateException("Menu has been disposed!");
         player.openInventory(getInventory());
+        // the open was cancelled; don't keep the inventory around
+        if (viewers.isEmpty() && releaseDeadline < 0) MenuReaper.get().schedule(this, template.releaseDelay);
+    }
+
+    /**
+     * Move a player from this Menu to another.
+     * <p>
+     * If the other menu has the same rows and title, is not open
+     * already and the player is the only viewer of this menu, the
+     * window stays open: the inventory is handed over to the other
+     * menu and only the slots which differ are rewritten. No close
+     * or open events are fired, so the CloseAction of this menu is
+     * not run.
+     * <p>
+     * Otherwise the other menu is opened on the next tick, as
+     * opening an inventory is not allowed during inventory events.
+     * <p><b>Not</b> async safe.
+     *
+     * @param player a player viewing this menu
+     * @param other the Menu to show instead
+     * @return true if switched in place, false if an open was deferred
+     * @throws IllegalStateException if the other menu has been disposed
+     */
+    public boolean switchTo(Player player, Menu other) {
+        if (other.disposed) throw new IllegalStateException("Menu has been disposed!");
+        if (other == this) return true;
+        if (inventory == null || other.inventory != null
+                || other.numberOfRows != numberOfRows || !other.title.equals(title)
+                || viewers.size() != 1 || !viewers.contains(player)) {
+            DeferredActions.get().defer(other.registry.getPlugin(), player, () -> other.open(player));
+            return false;
+        }
+        final Inventory shared = inventory;
+        final ItemStack[] shown = shared.getContents();
+        holder.bind(other);
+        other.holder = holder;
+        other.inventory = shared;
+        other.trackViewer(player);
+        MenuReaper.get().cancel(other);
+        holder = null;
+        inventory = null;
+        untrackAllViewers();
+        if (idleListener != null) idleListener.run();
+        // write only what differs from the current window
+        final ItemStack[] next = other.frame;
+        for (int slot = 0; slot < next.length; ++slot) {
+            final ItemStack item = next[slot];
+            if (!Objects.equals(item, (slot < shown.length) ? shown[slot] : null)) shared.setItem(slot, item);
+        }
+        return true;
+    }
+
+    /**
+     * Dispose of this Menu.
+     * <p>
+     * Closes the inventory for all current viewers (the CloseAction
+     * is not run) and unregisters the menu so it no longer receives
+     * events. A disposed menu cannot be opened again.
+     * <p><b>Not</b> async safe.
+     */
+    public void dispose() {
+        if (disposed) return;
+        disposed = true;
+        MenuReaper.get().cancel(this);
+        registry.unregister(this);
+        if (inventory != null) {
+            final Inventory toClose = inventory;
+            inventory = null;
+            holder = null;
+            untrackAllViewers();
+            for (HumanEntity viewer : new ArrayList<>(toClose.getViewers())) {
+                viewer.closeInventory();
+            }
+        }
+    }
+
+    /**
+     * Override a slot of this Menu only.
+     * <p>
+     * The template and any other Menu spawned from it are not
+     * affected; the shared slot arrays are copied on the first
+     * override. A non-null item is protected like any element.
+     * If the inventory is live, the slot is updated at once.
+     * <p><b>Not</b> async safe.
+     *
+     * @param slot a slot of the menu
+     * @param item an item to show or null for an empty slot
+     * @param action an action to run on click or null for none
+     * @return this Menu
+     * @throws IllegalArgumentException if slot outside of inventory range
+     */
+    public Menu setOverride(int slot, ItemStack item, ClickAction action) throws IllegalArgumentException {
+        if (slot < 0 || slot >= numberOfRows.slotCount) throw new IllegalArgumentException("That is not a valid slot!");
+        ownFrame();
+        if (!ownActions) {
+            actions = actions.clone();
+            typedActions = typedActions.clone();
+            ownActions = true;
+        }
+        frame[slot] = item;
+        actions[slot] = action;
+        typedActions[slot] = null;
+        elementSlots = (item != null) ? elementSlots.with(slot) : elementSlots.without(slot);
+        refreshSlot(slot);
+        return this;
+    }
+
+    /**
+     * Restore a slot to the content of the template.
+     * <p><b>Not</b> async safe.
+     *
+     * @param slot a slot of the menu
+     * @return this Menu
+     * @throws IllegalArgumentException if slot outside of inventory range
+     */
+    public Menu clearOverride(int slot) throws IllegalArgumentException {
+        if (slot < 0 || slot >= numberOfRows.slotCount) throw new IllegalArgumentException("That is not a valid slot!");
+        if (ownFrame) frame[slot] = template.frame[slot];
+        if (ownActions) {
+            actions[slot] = template.actions[slot];
+            typedActions[slot] = template.typedActions[slot];
+        }
+        elementSlots = template.elementSlots.contains(slot) ? elementSlots.with(slot) : elementSlots.without(slot);
+        refreshSlot(slot);
+        return this;
+    }
+
+    /**
+     * Change the item shown in a slot of this Menu.
+     * <p>
+     * The change is recorded at once but sent to viewers in one
+     * batch on the next tick, together with every other update made
+     * during this tick; a slot updated several times is sent once,
+     * and not at all if it ends up showing what it already showed.
+     * The slot's action is kept. As with
+     * {@link #setOverride(int, ItemStack, ClickAction)}, a
+     * non-null item is protected and only this Menu is changed.
+     * <p><b>Not</b> async safe.
+     *
+     * @param slot a slot of the menu
+     * @param element an element to show or null for an empty slot
+     * @return this Menu
+     * @throws IllegalArgumentException if slot outside of inventory range
+     */
+    public Menu update(int slot, MenuElement element) throws IllegalArgumentException {
+        if (slot < 0 || slot >= numberOfRows.slotCount) throw new IllegalArgumentException("That is not a valid slot!");
+        putItem(slot, (element != null) ? element.getRendered() : null);
+        markDirty(1L << slot);
+        return this;
+    }
+
+    /**
+     * Change the item shown in a set of slots of this Menu.
+     * <p>
+     * Batched like {@link #update(int, MenuElement)}.
+     * <p><b>Not</b> async safe.
+     *
+     * @param slots a SlotSet of the menu
+     * @param element an element to show or null for empty slots
+     * @return this Menu
+     * @throws IllegalArgumentException if any slot outside of inventory range
+     */
+    public Menu updateAll(SlotSet slots, MenuElement element) throws IllegalArgumentException {
+        if (slots.last() >= numberOfRows.slotCount) throw new IllegalArgumentException("That is not a valid slot!");
+        final ItemStack item = (element != null) ? element.getRendered() : null;
+        slots.forEach(slot -> putItem(slot, item));
+        markDirty(slots.toMask());
+        return this;
+    }
+
+    /**
+     * Change the items shown in several slots of this Menu.
+     * <p>
+     * Batched like {@link #update(int, MenuElement)}.
+     * <p><b>Not</b> async safe.
+     *
+     * @param elements elements to show by slot; null values empty the slot
+     * @return this Menu
+     * @throws IllegalArgumentException if any slot outside of inventory range
+     */
+    public Menu updateAll(Map<Integer, ? extends MenuElement> elements) throws IllegalArgumentException {
+        long changed = 0L;
+        for (Map.Entry<Integer, ? extends MenuElement> entry : elements.entrySet()) {
+            final int slot = entry.getKey();
+            if (slot < 0 || slot >= numberOfRows.slotCount) throw new IllegalArgumentException("That is not a valid slot!");
+            final MenuElement element = entry.getValue();
+            putItem(slot, (element != null) ? element.getRendered() : null);
+            changed |= 1L << slot;
+        }
+        markDirty(changed);
+        return this;
+    }
+
+    private void ownFrame() {
+        if (!ownFrame) {
+            frame = frame.clone();
+            ownFrame = true;
+        }
+    }
+
+    private void putItem(int slot, ItemStack item) {
+        ownFrame();
+        frame[slot] = item;
+        final SlotSet before = elementSlots;
+        elementSlots = (item != null) ? elementSlots.with(slot) : elementSlots.without(slot);
+        if (!elementSlots.equals(before)) {
+            protectedSlots = SlotSet.all(numberOfRows).difference(template.openSlots).union(elementSlots);
+        }
+    }
+
+    private void markDirty(long slots) {
+        if (slots == 0L) return;
+        // an empty mask means the menu is not queued yet
+        if (dirtySlots == 0L) MenuUpdater.get().queue(this);
+        dirtySlots |= slots;
+    }
+
+    /**
+     * Send the slots changed since the last flush to viewers.
+     * <p>
+     * Called by the {@link MenuUpdater}. Slots already showing an
+     * equal item are skipped. Without a live inventory there is
+     * nothing to send; it is filled from the frame when created.
+     */
+    void flush() {
+        long dirty = dirtySlots;
+        dirtySlots = 0L;
+        if (inventory == null || disposed) return;
+        while (dirty != 0L) {
+            final int slot = Long.numberOfTrailingZeros(dirty);
+            dirty &= dirty - 1;
+            final ItemStack item = frame[slot];
+            if (!Objects.equals(item, inventory.getItem(slot))) inventory.setItem(slot, item);
+        }
+    }
+
+    /**
+     * Forget changes awaiting a flush; the frame keeps them.
+     */
+    void clearDirty() {
+        dirtySlots = 0L;
+    }
+
+    private void refreshSlot(int slot) {
+        protectedSlots = SlotSet.all(numberOfRows).difference(template.openSlots).union(elementSlots);
+        if (inventory != null) inventory.setItem(slot, frame[slot]);
+    }
+
+    /**
+     * Get the template this Menu was spawned from.
+     *
+     * @return the MenuTemplate of this menu
+     */
+    public MenuTemplate getTemplate() {
+        return template;
+    }
+
+    /**
+     * Lock a slot or the whole menu while an async action runs.
+     *
+     * @param target a slot, {@link #MENU_LOCK} or {@link #NO_LOCK}
+     */
+    void lock(int target) {
+        if (target == MENU_LOCK) {
+            ++menuLocks;
+        } else if (target >= 0 && target < SlotSet.MAX_SLOTS) {
+            lockedSlots |= 1L << target;
+        }
+    }
+
+    /**
+     * Release a lock taken with {@link #lock(int)}.
+     *
+     * @param target a slot, {@link #MENU_LOCK} or {@link #NO_LOCK}
+     */
+    void unlock(int target) {
+        if (target == MENU_LOCK) {
+            if (menuLocks > 0) --menuLocks;
+        } else if (target >= 0 && target < SlotSet.MAX_SLOTS) {
+            lockedSlots &= ~(1L << target);
+        }
+    }
+
+    /**
+     * Check if clicks on a slot are refused by a lock.
+     *
+     * @param slot a slot
+     * @return true if the slot or menu is locked
+     */
+    boolean isLocked(int slot) {
+        return menuLocks > 0 || (slot >= 0 && slot < SlotSet.MAX_SLOTS && (lockedSlots & (1L << slot)) != 0L);
+    }
+
+    /**
+     * Get the registry which routes events to this Menu.
+     *
+     * @return the MenuRegistry of this menu's plugin
+     */
+    public MenuRegistry getRegistry() {
+        return registry;
+    }
+
+    /**
+     * Check if an Inventory is the live inventory of this Menu.
+     *
+     * @param inventory an Inventory
+     * @return true if the menu is not disposed and owns the inventory
+     */
+    boolean owns(Inventory inventory) {
+        return !disposed && inventory != null && this.inventory == inventory;
+    }
+
+    /**
+     * Check whether this Menu has been disposed.
+     *
+     * @return true if {@link #dispose()} has been called
+     */
+    public boolean isDisposed() {
+        return disposed;
     }
 
     /**
@@ -143,150 +488,361 @@ public final class Menu {
     /**
      * Get all Players currently viewing this menu.
      * <p>
-     * Returns an empty set if inventory == null
+     * The returned set is a live, read-only view which is
+     * kept up to date from open and close events; it does not
+     * need to be fetched again and is empty if inventory == null.
+     * <p>
+     * Opening or closing an inventory changes the set, so copy it
+     * first when doing so while iterating, for example
+     * {@code new ArrayList<>(menu.getViewers())}; otherwise the
+     * iterator throws {@link ConcurrentModificationException}.
+     * <p><b>Not</b> async safe.
      *
-     * @return a set of Players viewing this menu
+     * @return a read-only set of Players viewing this menu
      */
     public Set<Player> getViewers() {
-        if (inventory == null) return Collections.emptySet();
-        return inventory.getViewers().parallelStream()
-                .filter(Player.class::isInstance)
-                .map(Player.class::cast)
-                .collect(Collectors.toSet());
+        return viewers;
     }
 
     /**
-     * Registered listener which passes Inventory event
-     * information to the menu's actions.
+     * Get the number of Players currently viewing this menu.
+     *
+     * @return number of viewers
      */
-    protected class ClickListener implements Listener {
-        private BukkitRunnable pendingDelete;
+    public int getViewerCount() {
+        return viewers.size();
+    }
 
-        private ClickListener() {}
+    /**
+     * Run an action for each Player currently viewing this menu.
+     * <p>
+     * Does not allocate; the action must not open or close
+     * this menu for any player.
+     *
+     * @param action an action accepting each viewer
+     */
+    public void forEachViewer(Consumer<? super Player> action) {
+        viewers.forEachViewer(action);
+    }
 
-        /**
-         * Process InventoryClickEvent and encapsulate to send
-         * to MenuAction if so defined.
-         *
-         * @param e original click event
-         */
-        @EventHandler
-        public void onMenuClick(InventoryClickEvent e) {
-            // If the top inventory isn't ours, ignore it
-            if (e.getInventory() != inventory) {
-                return;
+    /**
+     * Process InventoryClickEvent and encapsulate to send
+     * to MenuAction if so defined.
+     *
+     * @param e original click event
+     */
+    void onClick(InventoryClickEvent e) {
+        // If the bottom inventory was clicked...
+        if (e.getClickedInventory() == e.getView().getBottomInventory()) {
+            // and we want to cancel clicks for the bottom, cancel the event
+            if (cancelClickLower) e.setCancelled(true);
+            // if we are not allowing shift clicks
+            if (e.isShiftClick() && !allowShiftClickLower) {
+                e.setCancelled(true);
             }
-            // If the bottom inventory was clicked...
-            if (e.getClickedInventory() == e.getView().getBottomInventory()) {
-                // and we want to cancel clicks for the bottom, cancel the event
-                if (cancelClickLower) e.setCancelled(true);
-                // if we are not allowing shift clicks
-                if (e.isShiftClick() && !allowShiftClickLower) {
-                    e.setCancelled(true);
-                }
-                return;
+            return;
+        }
+        // If the player used hotkeys, cancel the event
+        if (e.getHotbarButton() != -1) {
+            e.setCancelled(true);
+        }
+        final HumanEntity whoClicked = e.getWhoClicked();
+        // if for some reason the click isn't a player, ignore it
+        if (!(whoClicked instanceof Player)) {
+            return;
+        }
+        final Player player = (Player) whoClicked;
+        final int slot = e.getSlot();
+        // if this is a menu click (top inventory)
+        if (e.getClickedInventory() == e.getInventory()) {
+            // if the slot holds a menu element
+            if (elementSlots.contains(slot)) {
+                // cancel the click
+                e.setCancelled(true);
             }
-            // If the player used hotkeys, cancel the event
-            if (e.getHotbarButton() != -1) {
+            // if we are not allowing ANY pickup from the top menu (outside of open slots), cancel the event
+            if (!allowPickupFromMenu && protectedSlots.contains(slot)) {
                 e.setCancelled(true);
             }
-            final HumanEntity whoClicked = e.getWhoClicked();
-            // if for some reason the click isn't a player, ignore it
-            if (!(whoClicked instanceof Player)) {
+        }
+        // if an async action holds the slot or menu, refuse the click
+        if (isLocked(slot) && e.getClickedInventory() == e.getInventory()) {
+            e.setCancelled(true);
+            return;
+        }
+        // if this slot has an action for this type of click
+        final ClickAction action = actionFor(slot, e.getClick());
+        if (action != null) {
+            // over a click limit: cancel before any user code runs
+            if (isThrottled(player, slot)) {
+                e.setCancelled(true);
                 return;
             }
-            final Player player = (Player) whoClicked;
-            final int slot = e.getSlot();
-            // if this is a menu click (top inventory)
-            if (e.getClickedInventory() == e.getInventory()) {
-                // search the menu elements map for the slot
-                if (contents.keySet().parallelStream().anyMatch(key -> key == slot)) {
-                    // cancel the click
-                    e.setCancelled(true);
-                }
-                // if we are not allowing ANY pickup from the top menu, cancel the event
-                if (!allowPickupFromMenu) {
-                    e.setCancelled(true);
+            // reused for every click; actions retain() it to keep it
+            final MenuClick menuClick = MenuClick.obtain(e, player);
+            try {
+                // interceptors may stop the click before the action
+                for (ClickInterceptor interceptor : template.interceptors[slot]) {
+                    if (!interceptor.intercept(menuClick)) return;
                 }
-            }
-            // if this slot has an associated action
-            if (actions.containsKey(slot)) {
                 // run action function
-                actions.get(slot).onClick(new MenuClick(e, player));
+                action.onClick(menuClick);
+            } finally {
+                menuClick.recycle();
             }
         }
+    }
 
-        /**
-         * Process {@link InventoryDragEvent}.
-         * <p>
-         * Cancel item drag events which include the top inventory.
-         *
-         * @param e original InventoryDragEvent
-         */
-        @EventHandler
-        public void onMenuDrag(InventoryDragEvent e) {
-            // If the top inventory isn't ours, ignore it
-            if (e.getInventory() != inventory) {
-                return;
-            }
-            // If the slots include the top inventory, cancel the event
-            if (e.getRawSlots().parallelStream().anyMatch(slot -> slot < numberOfRows.slotCount)) {
-                e.setCancelled(true);
+    /**
+     * Find the action for a click: the action for its ClickType if
+     * the slot has one, otherwise the slot's general action.
+     *
+     * @param slot clicked slot
+     * @param clickType type of the click
+     * @return the action or null if none
+     */
+    private ClickAction actionFor(int slot, ClickType clickType) {
+        // slots outside the window, such as -999, have none
+        if (slot < 0 || slot >= actions.length) return null;
+        final ClickAction[] byType = typedActions[slot];
+        if (byType != null && clickType != null) {
+            final ClickAction typed = byType[clickType.ordinal()];
+            if (typed != null) return typed;
+        }
+        return actions[slot];
+    }
+
+    private boolean isThrottled(Player player, int slot) {
+        final ClickThrottle slotThrottle = (template.slotThrottles != null) ? template.slotThrottles[slot] : null;
+        if (slotThrottle == null && template.clickThrottle == null) return false;
+        final ClickThrottle menuThrottle = template.clickThrottle;
+        final int entityId = player.getEntityId();
+        final long now = System.nanoTime();
+        // a click refused by either limit is counted by neither
+        if (slotThrottle != null && !slotThrottle.peek(entityId, slot, now)) return true;
+        if (menuThrottle != null && !menuThrottle.peek(entityId, -1, now)) return true;
+        if (slotThrottle != null) slotThrottle.tryAcquire(entityId, slot, now);
+        if (menuThrottle != null) menuThrottle.tryAcquire(entityId, -1, now);
+        return false;
+    }
+
+    /**
+     * Process {@link InventoryDragEvent}.
+     * <p>
+     * Cancel item drag events which include protected slots
+     * of the top inventory.
+     *
+     * @param e original InventoryDragEvent
+     */
+    void onDrag(InventoryDragEvent e) {
+        // If the slots include a protected slot of the top inventory, cancel the event
+        if (SlotSet.ofRawSlots(e.getRawSlots(), numberOfRows.slotCount).intersects(protectedSlots)) {
+            e.setCancelled(true);
+        }
+    }
+
+    /**
+     * Process {@link InventoryOpenEvent}.
+     * <p>
+     * Count the new viewer. If the currently made {@link Inventory}
+     * is opened again before its grace period has elapsed, cancel
+     * the pending release.
+     *
+     * @param e original InventoryOpenEvent.
+     */
+    void onOpen(InventoryOpenEvent e) {
+        final HumanEntity opener = e.getPlayer();
+        if (opener instanceof Player) trackViewer((Player) opener);
+        MenuReaper.get().cancel(this);
+    }
+
+    /**
+     * Perform close logic and schedule cleanup.
+     * <p>These steps include running the CloseAction callback
+     * (if present) and then, once the last viewer has left,
+     * scheduling the release of the inventory with the shared
+     * {@link MenuReaper} after the menu's grace period.
+     *
+     * @param e original InventoryCloseEvent
+     */
+    void onClose(InventoryCloseEvent e) {
+        final HumanEntity closer = e.getPlayer();
+        if (closeAction != null && closer instanceof Player) {
+            closeAction.onClose(new MenuClose(e, (Player) closer));
+        }
+        if (closer instanceof Player) untrackViewer((Player) closer);
+        if (viewers.isEmpty() && !disposed) MenuReaper.get().schedule(this, template.releaseDelay);
+    }
+
+    /**
+     * Release the inventory after the grace period has elapsed.
+     * <p>
+     * Called by the {@link MenuReaper}. If viewers remain that
+     * were missed by the events, the viewer set is corrected, the
+     * inventory is kept and the release is checked again later, as
+     * their close may be missed too. Pooled inventories are
+     * returned to the pool.
+     */
+    void release() {
+        if (inventory == null) return;
+        final List<HumanEntity> actualViewers = inventory.getViewers();
+        if (!actualViewers.isEmpty()) {
+            for (HumanEntity viewer : actualViewers) {
+                if (viewer instanceof Player) trackViewer((Player) viewer);
             }
+            MenuReaper.get().schedule(this, template.releaseDelay);
+            return;
         }
+        // only left by viewers whose close was missed
+        untrackAllViewers();
+        if (template.pooled) registry.getInventoryPool().giveBack(holder);
+        holder = null;
+        inventory = null;
+    }
 
-        /**
-         * Process {@link InventoryOpenEvent}.
-         * <p>
-         * If the currently made {@link Inventory} is opened again
-         * by another player before the task timer has elapsed,
-         * cancel the current destruction task.
-         *
-         * @param e original InventoryOpenEvent.
-         */
-        @EventHandler
-        public void onMenuOpen(InventoryOpenEvent e) {
-            if (e.getInventory() != inventory) {
-                return;
+    /**
+     * Add a viewer, starting animations for the first one.
+     *
+     * @param player a player viewing the inventory
+     */
+    private void trackViewer(Player player) {
+        final boolean first = viewers.isEmpty();
+        viewers.addViewer(player);
+        if (first && template.animations != null) MenuAnimator.get().start(this);
+    }
+
+    /**
+     * Remove a viewer, stopping animations after the last one.
+     *
+     * @param player a player who left the inventory
+     */
+    private void untrackViewer(Player player) {
+        if (!viewers.contains(player)) return;
+        viewers.removeViewer(player);
+        if (!viewers.isEmpty()) return;
+        if (template.animations != null) MenuAnimator.get().stop(this);
+        if (idleListener != null) idleListener.run();
+    }
+
+    /**
+     * Set a listener run when the last viewer leaves this Menu.
+     * <p>
+     * Not run when the menu is disposed.
+     *
+     * @param listener a listener or null for none
+     */
+    void setIdleListener(Runnable listener) {
+        this.idleListener = listener;
+    }
+
+    private void untrackAllViewers() {
+        if (!viewers.isEmpty() && template.animations != null) MenuAnimator.get().stop(this);
+        viewers.clearViewers();
+    }
+
+    /**
+     * Show the current frames of the animated slots of a period.
+     * <p>
+     * Called by the {@link MenuAnimator} on ticks where frames of
+     * the period change; changed slots go through the batched
+     * update path.
+     *
+     * @param period an animation period of this menu's template
+     * @param tick animation tick
+     */
+    void animate(int period, long tick) {
+        final int[] periods = template.animationPeriods;
+        for (int i = 0; i < periods.length; ++i) {
+            if (periods[i] != period) continue;
+            long slots = template.animatedSlots[i];
+            long changed = 0L;
+            while (slots != 0L) {
+                final int slot = Long.numberOfTrailingZeros(slots);
+                slots &= slots - 1;
+                final ItemStack item = template.animations[slot].frameAt(tick);
+                if (frame[slot] == item) continue;
+                ownFrame();
+                frame[slot] = item;
+                changed |= 1L << slot;
             }
-            if (pendingDelete != null) {
-                pendingDelete.cancel();
-                pendingDelete = null;
+            markDirty(changed);
+            return;
+        }
+    }
+
+    /**
+     * Small array-backed set of the players viewing a menu.
+     * <p>
+     * Read-only to callers of {@link #getViewers()}; mutated only
+     * by the menu's event handlers.
+     */
+    private static final class ViewerSet extends AbstractSet<Player> {
+        private Player[] players = new Player[4];
+        private int size;
+        // removal reorders players, so iterators must fail on any change
+        private int modCount;
+
+        private void addViewer(Player player) {
+            if (contains(player)) return;
+            if (size == players.length) players = Arrays.copyOf(players, size * 2);
+            players[size++] = player;
+            ++modCount;
+        }
+
+        private void removeViewer(Player player) {
+            for (int i = 0; i < size; ++i) {
+                if (players[i] == player) {
+                    players[i] = players[--size];
+                    players[size] = null;
+                    ++modCount;
+                    return;
+                }
             }
         }
 
-        /**
-         * Perform close logic and schedule cleanup.
-         * <p>These steps include running the CloseAction callback
-         * (if present) and then the following:
-         * <ul>
-         *     <li>Setup a task to null the inventory after all
-         *     viewers have closed it.
-         *     <li>Sets this task to run in ten ticks, trying again every
-         *     50 ticks until all viewers have left.
-         *
-         * @param e original InventoryCloseEvent
-         */
-        @EventHandler
-        public void onMenuClose(InventoryCloseEvent e) {
-            if (e.getInventory() != inventory) {
-                return;
+        private void forEachViewer(Consumer<? super Player> action) {
+            for (int i = 0; i < size; ++i) {
+                action.accept(players[i]);
             }
-            final HumanEntity closer = e.getPlayer();
-            if (closeAction != null && closer instanceof Player) {
-                closeAction.onClose(new MenuClose(e, (Player) closer));
+        }
+
+        @Override
+        public boolean contains(Object o) {
+            for (int i = 0; i < size; ++i) {
+                if (players[i] == o) return true;
             }
-            pendingDelete = new BukkitRunnable() {
+            return false;
+        }
+
+        private void clearViewers() {
+            Arrays.fill(players, 0, size, null);
+            size = 0;
+            ++modCount;
+        }
+
+        @Override
+        public Iterator<Player> iterator() {
+            return new Iterator<Player>() {
+                private final int expectedModCount = modCount;
+                private int next;
+
                 @Override
-                public void run() {
-                    if (inventory == null) cancel();
-                    if (inventory.getViewers().isEmpty()) {
-                        inventory = null;
-                        this.cancel();
-                    }
+                public boolean hasNext() {
+                    return next < size;
+                }
+
+                @Override
+                public Player next() {
+                    if (modCount != expectedModCount) throw new ConcurrentModificationException();
+                    if (next >= size) throw new NoSuchElementException();
+                    return players[next++];
                 }
             };
-            pendingDelete.runTaskTimer(plugin, 10L, 50L);
+        }
+
+        @Override
+        public int size() {
+            return size;
         }
     }
 
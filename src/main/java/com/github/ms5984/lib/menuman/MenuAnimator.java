@@ -0,0 +1,150 @@
+/*
+ *  Copyright 2021 ms5984 (Matt) <https://github.com/ms5984>
+ *
+ *  This file is part of MenuMan.
+ *
+ *  MenuMan is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU Lesser General Public License as
+ *  published by the Free Software Foundation, either version 3 of the
+ *  License, or (at your option) any later version.
+ *
+ *  MenuMan is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.github.ms5984.lib.menuman;
+
+import org.bukkit.plugin.Plugin;
+
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Library-wide task which advances the frames of animated elements.
+ * <p>
+ * Only menus with viewers are tracked, grouped by the periods of
+ * their animations, so each tick only visits the menus with a period
+ * whose frames change on that tick. Changed slots are sent through
+ * the batched {@link Menu#update(int, MenuElement)} path, and frames
+ * of menus backed off by the {@link LoadGovernor} are skipped. A single
+ * task runs, only while animated menus are open.
+ * <p><b>Not</b> async safe.
+ */
+final class MenuAnimator implements Runnable {
+    private static final MenuAnimator INSTANCE = new MenuAnimator();
+    private final TreeMap<Integer, ArrayList<Menu>> byPeriod = new TreeMap<>();
+    private long currentTick;
+    private int active;
+    private final LibraryTask task = new LibraryTask(this, true);
+
+    private MenuAnimator() {}
+
+    /**
+     * Get the library-wide animator.
+     *
+     * @return the MenuAnimator
+     */
+    static MenuAnimator get() {
+        return INSTANCE;
+    }
+
+    /**
+     * Start animating a menu which gained its first viewer.
+     *
+     * @param menu a menu with animations
+     */
+    void start(Menu menu) {
+        for (int period : menu.getTemplate().animationPeriods) {
+            byPeriod.computeIfAbsent(period, p -> new ArrayList<>()).add(menu);
+        }
+        ++active;
+        task.start(menu.getRegistry().getPlugin());
+    }
+
+    /**
+     * Stop animating a menu which lost its last viewer.
+     *
+     * @param menu a menu with animations
+     */
+    void stop(Menu menu) {
+        boolean removed = false;
+        for (int period : menu.getTemplate().animationPeriods) {
+            final ArrayList<Menu> menus = byPeriod.get(period);
+            if (menus == null || !menus.remove(menu)) continue;
+            removed = true;
+            if (menus.isEmpty()) byPeriod.remove(period);
+        }
+        if (removed && --active == 0) task.cancel();
+    }
+
+    /**
+     * Get the number of menus being animated.
+     *
+     * @return number of animated menus
+     */
+    int getActive() {
+        return active;
+    }
+
+    /**
+     * Get the plugin the animation task is scheduled under.
+     *
+     * @return the plugin or null if nothing is animated
+     */
+    Plugin getOwner() {
+        return task.getOwner();
+    }
+
+    /**
+     * Advance the animation clock by one tick.
+     */
+    @Override
+    public void run() {
+        final long tick = ++currentTick;
+        final LoadGovernor governor = LoadGovernor.get();
+        governor.watch(task.getOwner());
+        for (Map.Entry<Integer, ArrayList<Menu>> entry : byPeriod.entrySet()) {
+            final int period = entry.getKey();
+            // no frame of this period changes on this tick
+            if (tick % period != 0) continue;
+            for (Menu menu : entry.getValue()) {
+                if (governor.allows(menu.getTemplate().updatePriority)) {
+                    menu.animate(period, tick);
+                } else {
+                    // frames are by tick, so the next allowed one catches up
+                    governor.skippedFrame();
+                }
+            }
+        }
+    }
+
+    /**
+     * Handle the disable of a plugin.
+     * <p>
+     * Drops the plugin's menus and moves the task to another
+     * plugin if the disabled one owned it.
+     *
+     * @param plugin a disabled plugin
+     */
+    void onDisable(Plugin plugin) {
+        final ArrayList<Menu> dropped = new ArrayList<>();
+        byPeriod.values().forEach(menus -> menus.removeIf(menu -> {
+            if (menu.getRegistry().getPlugin() != plugin) return false;
+            if (!dropped.contains(menu)) dropped.add(menu);
+            return true;
+        }));
+        byPeriod.values().removeIf(ArrayList::isEmpty);
+        active -= dropped.size();
+        if (active == 0) {
+            // the disabled plugin's menus may have been the last animated
+            task.cancel();
+            return;
+        }
+        task.handOff(plugin, byPeriod.firstEntry().getValue().get(0).getRegistry().getPlugin());
+    }
+}
@@ -22,7 +22,9 @@ import org.bukkit.inventory.ItemStack;
 import org.bukkit.plugin.java.JavaPlugin;
 import org.jetbrains.annotations.NotNull;
 
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 /**
@@ -41,6 +43,26 @@ public final class MenuBuilder {
      * MenuAction to slot mappings.
      */
     protected final Map<Integer, ClickAction> actions = new HashMap<>();
+    /**
+     * ClickType-indexed action table to slot mappings.
+     */
+    protected final Map<Integer, ClickAction[]> typedActions = new HashMap<>();
+    /**
+     * ClickThrottle to slot mappings.
+     */
+    protected final Map<Integer, ClickThrottle> throttles = new HashMap<>();
+    /**
+     * Element interceptor chain to slot mappings.
+     */
+    protected final Map<Integer, ClickInterceptor[]> slotInterceptors = new HashMap<>();
+    /**
+     * AnimatedElement to slot mappings.
+     */
+    protected final Map<Integer, AnimatedElement> animations = new HashMap<>();
+    /**
+     * Interceptors run before every action of the menu.
+     */
+    protected final List<ClickInterceptor> interceptors = new ArrayList<>();
     /**
      * Describes filler object.
      */
@@ -73,6 +95,30 @@ public final class MenuBuilder {
      * Allow shift-clicking of items from the lower inventory.
      */
     protected boolean allowLowerInvShiftClick;
+    /**
+     * Hold the created Menu weakly in its registry while idle.
+     */
+    protected boolean weakRegistration;
+    /**
+     * Slots of the menu inventory which players may freely use.
+     */
+    protected SlotSet openSlots = SlotSet.empty();
+    /**
+     * Ticks to keep the inventory after the last viewer closes it.
+     */
+    protected long releaseDelay = 10L;
+    /**
+     * Reuse released inventories through the registry's pool.
+     */
+    protected boolean pooledInventories;
+    /**
+     * Limit on clicks of any action of the menu.
+     */
+    protected ClickThrottle clickThrottle;
+    /**
+     * Priority of updates and animations under lag.
+     */
+    protected LoadGovernor.Priority updatePriority = LoadGovernor.Priority.NORMAL;
 
     /**
      * Create a new MenuBuilder with a number of rows and a title.
@@ -194,6 +240,132 @@ public final class MenuBuilder {
         return this;
     }
 
+    /**
+     * Set slots of the menu which players may freely place items
+     * into and take items from (for instance, an input slot).
+     * <p>
+     * Clicks and drags on these slots are not cancelled, even if
+     * {@link #defaultClickBehavior(boolean)} is false. Slots holding
+     * an element stay protected. Empty by default.
+     *
+     * @param slots a SlotSet of open slots
+     * @return this MenuBuilder
+     * @throws IllegalArgumentException if any slot outside of inventory range
+     */
+    public MenuBuilder setOpenSlots(@NotNull SlotSet slots) throws IllegalArgumentException {
+        if (slots.last() >= numberOfRows.slotCount) throw new IllegalArgumentException("That is not a valid slot!");
+        this.openSlots = slots;
+        return this;
+    }
+
+    /**
+     * Get the slots which currently have an element assigned.
+     *
+     * @return a SlotSet of assigned slots
+     */
+    public SlotSet getAssignedSlots() {
+        long mask = 0L;
+        for (int slot : items.keySet()) {
+            mask |= 1L << slot;
+        }
+        return SlotSet.fromMask(mask);
+    }
+
+    /**
+     * Set the grace period before the menu's inventory is released
+     * after its last viewer closes it.
+     * <p>
+     * Reopening the menu within this period reuses the inventory.
+     * Defaults to 10 ticks.
+     *
+     * @param ticks grace period in ticks
+     * @return this MenuBuilder
+     * @throws IllegalArgumentException if ticks is negative
+     */
+    public MenuBuilder setReleaseDelay(long ticks) throws IllegalArgumentException {
+        if (ticks < 0) throw new IllegalArgumentException("Release delay cannot be negative!");
+        this.releaseDelay = ticks;
+        return this;
+    }
+
+    /**
+     * Should the created Menu be registered weakly?
+     * <p>
+     * A weakly registered menu is only kept alive by its registry
+     * while its inventory is open; once nothing else references it,
+     * it is reclaimed and drops out of event dispatch without a call
+     * to {@link Menu#dispose()}. Useful for short-lived menus such
+     * as confirmations. Defaults to false.
+     *
+     * @param weak true to register weakly
+     * @return this MenuBuilder
+     */
+    public MenuBuilder setWeakRegistration(boolean weak) {
+        this.weakRegistration = weak;
+        return this;
+    }
+
+    /**
+     * Should the created Menu reuse pooled inventories?
+     * <p>
+     * A pooled menu borrows its Inventory from the
+     * {@link InventoryPool} of its registry when opened and returns
+     * it once released, which avoids creating a new Inventory on
+     * every open of short-lived, frequently opened menus. Defaults
+     * to false.
+     *
+     * @param pooled true to pool inventories
+     * @return this MenuBuilder
+     */
+    public MenuBuilder setPooledInventories(boolean pooled) {
+        this.pooledInventories = pooled;
+        return this;
+    }
+
+    /**
+     * Set how soon the created Menu's updates are slowed down
+     * while the server lags.
+     * <p>
+     * See {@link LoadGovernor}. Defaults to
+     * {@link LoadGovernor.Priority#NORMAL}.
+     *
+     * @param priority a Priority
+     * @return this MenuBuilder
+     */
+    public MenuBuilder setUpdatePriority(@NotNull LoadGovernor.Priority priority) {
+        this.updatePriority = priority;
+        return this;
+    }
+
+    /**
+     * Limit how fast each player may click the actions of the menu.
+     * <p>
+     * Clicks over the limit are cancelled and run no action. Applies
+     * in addition to any throttle of the clicked element. Null by
+     * default; set to null to disable.
+     *
+     * @param throttle a ClickThrottle or null for none
+     * @return this MenuBuilder
+     */
+    public MenuBuilder setClickThrottle(ClickThrottle throttle) {
+        this.clickThrottle = throttle;
+        return this;
+    }
+
+    /**
+     * Add an interceptor which runs before every action of the menu.
+     * <p>
+     * Runs after plugin-wide interceptors and before those of
+     * the clicked element.
+     *
+     * @param interceptor a ClickInterceptor
+     * @return this MenuBuilder
+     */
+    public MenuBuilder addInterceptor(@NotNull ClickInterceptor interceptor) {
+        interceptors.add(interceptor);
+        return this;
+    }
+
     /**
      * Add a previously-styled ItemStack directly to the menu.
      * <p>
@@ -254,6 +426,20 @@ public final class MenuBuilder {
      * @return new Menu initialized with this object's contents
      */
     public Menu create(JavaPlugin yourPlugin) {
-        return new Menu(this, yourPlugin);
+        return new Menu(createTemplate(yourPlugin), weakRegistration);
+    }
+
+    /**
+     * Create an immutable template of the contents of this builder.
+     * <p>
+     * Spawn one lightweight Menu per player from the template
+     * when each player needs their own inventory or overrides;
+     * later changes to this builder do not affect it.
+     *
+     * @param yourPlugin an instance of your plugin
+     * @return new MenuTemplate initialized with this object's contents
+     */
+    public MenuTemplate createTemplate(JavaPlugin yourPlugin) {
+        return new MenuTemplate(this, yourPlugin);
     }
 }
@@ -18,6 +18,7 @@
  */
 package com.github.ms5984.lib.menuman;
 
+import org.bukkit.Material;
 import org.bukkit.entity.Player;
 import org.bukkit.event.inventory.ClickType;
 import org.bukkit.event.inventory.InventoryClickEvent;
@@ -30,13 +31,23 @@ import java.util.Optional;
 
 /**
  * Class which encapsulates relevant data of InventoryClickEvent
+ * <p>
+ * The MenuClick passed to actions is reused for the next click once
+ * the action returns, so menus can handle clicks without allocating.
+ * It is only valid on the main thread, during the action; call
+ * {@link #retain()} to keep it for later (for instance, in a task).
+ * Prefer the primitive accessors ({@link #slotIndex()},
+ * {@link #clickedTop()}, {@link #hasCursorItem()}) on hot paths.
  */
 public final class MenuClick {
+    private static final MenuClick SHARED = new MenuClick(null, null);
+    private static boolean sharedInUse;
     /**
      * The player who clicked the Menu.
      */
-    protected final Player player;
-    private final InventoryClickEvent inventoryClickEvent;
+    protected Player player;
+    private InventoryClickEvent inventoryClickEvent;
+    private boolean reusable;
 
     /**
      * Create a {@link MenuClick} to pass to a {@link ClickAction}.
@@ -49,6 +60,83 @@ public final class MenuClick {
         inventoryClickEvent = e;
     }
 
+    /**
+     * Get a MenuClick for a click event, reusing the shared
+     * instance if it is free.
+     * <p>
+     * Must be paired with {@link #recycle()}.
+     *
+     * @param e original event
+     * @param player a player
+     * @return a MenuClick of the event
+     */
+    static MenuClick obtain(InventoryClickEvent e, Player player) {
+        // a nested click (from within an action) gets its own instance
+        if (sharedInUse) return new MenuClick(e, player);
+        sharedInUse = true;
+        SHARED.reusable = true;
+        SHARED.inventoryClickEvent = e;
+        SHARED.player = player;
+        return SHARED;
+    }
+
+    /**
+     * Hand a MenuClick from {@link #obtain(InventoryClickEvent, Player)}
+     * back for reuse, dropping its references.
+     */
+    void recycle() {
+        if (this != SHARED) return;
+        inventoryClickEvent = null;
+        player = null;
+        sharedInUse = false;
+    }
+
+    /**
+     * Get a MenuClick of this click which stays valid after the
+     * action returns.
+     * <p>
+     * Only allocates if this click is going to be reused.
+     *
+     * @return a MenuClick safe to keep
+     */
+    public MenuClick retain() {
+        return reusable ? new MenuClick(inventoryClickEvent, player) : this;
+    }
+
+    /**
+     * Get the index of the slot clicked.
+     * <p>
+     * Allocation-free alternative to {@link #getSlotClicked()}.
+     *
+     * @return {@link InventoryClickEvent#getSlot()} (value in context
+     * of the clicked inventory)
+     */
+    public int slotIndex() {
+        return inventoryClickEvent.getSlot();
+    }
+
+    /**
+     * Check if the menu (top inventory) was clicked.
+     *
+     * @return true if the clicked inventory is the menu
+     */
+    public boolean clickedTop() {
+        final Inventory clicked = inventoryClickEvent.getClickedInventory();
+        return clicked != null && clicked == inventoryClickEvent.getInventory();
+    }
+
+    /**
+     * Check if there is an item on the cursor.
+     * <p>
+     * Allocation-free alternative to {@link #getItemOnMouseCursor()}.
+     *
+     * @return true if the cursor holds an item
+     */
+    public boolean hasCursorItem() {
+        final ItemStack cursor = inventoryClickEvent.getCursor();
+        return cursor != null && cursor.getType() != Material.AIR;
+    }
+
     /**
      * Get the player that clicked the Menu.
      *
@@ -78,6 +166,15 @@ public final class MenuClick {
         return inventoryClickEvent.getClick();
     }
 
+    /**
+     * Get the number key pressed for a {@link ClickType#NUMBER_KEY} click.
+     *
+     * @return {@link InventoryClickEvent#getHotbarButton()}, 0-8 or -1
+     */
+    public int getHotbarButton() {
+        return inventoryClickEvent.getHotbarButton();
+    }
+
     /**
      * Get an Optional describing the slot clicked, if applicable.
      *
@@ -0,0 +1,83 @@
+/*
+ *  Copyright 2021 ms5984 (Matt) <https://github.com/ms5984>
+ *
+ *  This file is part of MenuMan.
+ *
+ *  MenuMan is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU Lesser General Public License as
+ *  published by the Free Software Foundation, either version 3 of the
+ *  License, or (at your option) any later version.
+ *
+ *  MenuMan is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.github.ms5984.lib.menuman;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Provides the entries of a {@link PaginatedMenu}, possibly from
+ * a slow store such as disk or a database.
+ * <p>
+ * Entries are fetched a page at a time. Fetches may complete on any
+ * thread; results are always applied to the menu on the main thread.
+ *
+ * @param <T> type of the entries
+ */
+public interface MenuDataSource<T> {
+    /**
+     * Get the total number of entries.
+     * <p>
+     * Called on the main thread whenever pages are counted,
+     * so it <b>must not</b> block; return a cached count.
+     *
+     * @return number of entries
+     */
+    int size();
+
+    /**
+     * Fetch a range of entries.
+     * <p>
+     * Called on the main thread; slow lookups should be run
+     * asynchronously and complete the future when done.
+     *
+     * @param offset index of the first entry
+     * @param limit maximum number of entries
+     * @return a future of at most <code>limit</code> entries
+     */
+    CompletableFuture<List<T>> fetch(int offset, int limit);
+
+    /**
+     * Create a source over an in-memory list.
+     * <p>
+     * The list is read (not copied) on each fetch, so it should
+     * support fast random access. Fetches complete immediately.
+     *
+     * @param list a list of entries
+     * @param <T> type of the entries
+     * @return a MenuDataSource of the list
+     */
+    static <T> MenuDataSource<T> of(@NotNull List<? extends T> list) {
+        return new MenuDataSource<T>() {
+            @Override
+            public int size() {
+                return list.size();
+            }
+
+            @Override
+            public CompletableFuture<List<T>> fetch(int offset, int limit) {
+                final int end = Math.min(list.size(), offset + limit);
+                return CompletableFuture.completedFuture(Collections.unmodifiableList(list.subList(Math.min(offset, end), end)));
+            }
+        };
+    }
+}
@@ -21,14 +21,19 @@ package com.github.ms5984.lib.menuman;
 import org.bukkit.inventory.ItemStack;
 import org.bukkit.inventory.meta.ItemMeta;
 
-import java.util.ArrayList;
-import java.util.Arrays;
-import java.util.List;
+import java.lang.ref.WeakReference;
+import java.util.*;
 
 /**
  * Encapsulation to promote lazy-initialization of ItemStacks
+ * <p>
+ * Menus use a rendered ItemStack which is generated once and cached
+ * until the element is changed through its builder. Styled renders
+ * are also interned, so elements which render to equal items share
+ * a single ItemStack across all menus.
  */
 public final class MenuElement {
+    private static final Map<ItemStack, WeakReference<ItemStack>> INTERNED = new WeakHashMap<>();
     /**
      * Initial ItemStack. May or may not be styled.
      */
@@ -41,6 +46,7 @@ public final class MenuElement {
      * A custom description for the ItemStack.
      */
     protected List<String> lore;
+    private ItemStack rendered;
 
     /**
      * Specify MenuElement with no initial styling.
@@ -68,8 +74,38 @@ public final class MenuElement {
      *
      * @return generated ItemStack
      */
-    @SuppressWarnings("ConstantConditions")
     public ItemStack generateComplete() {
+        return render();
+    }
+
+    /**
+     * Get the final ItemStack, rendered once and cached.
+     * <p>
+     * Styled renders are interned and shared between menus and
+     * elements, so the result <b>must not</b> be modified.
+     *
+     * @return the shared rendered ItemStack
+     */
+    ItemStack getRendered() {
+        ItemStack item = rendered;
+        if (item == null) {
+            item = render();
+            // only styled renders are new stacks
+            if (item != baseItem) item = intern(item);
+            rendered = item;
+        }
+        return item;
+    }
+
+    /**
+     * Drop the cached render after a change to this element.
+     */
+    void invalidate() {
+        rendered = null;
+    }
+
+    @SuppressWarnings("ConstantConditions")
+    private ItemStack render() {
         if (displayName != null || lore != null) {
             final ItemStack finalItem = new ItemStack(baseItem);
             final ItemMeta meta = finalItem.getItemMeta();
@@ -84,4 +120,23 @@ public final class MenuElement {
         }
         return baseItem;
     }
+
+    /**
+     * Get the canonical instance of a rendered ItemStack.
+     * <p>
+     * Interned items are held weakly and reclaimed once no
+     * menu or element uses them.
+     *
+     * @param item a freshly rendered item
+     * @return an equal, previously interned item or the item itself
+     */
+    static ItemStack intern(ItemStack item) {
+        synchronized (INTERNED) {
+            final WeakReference<ItemStack> existing = INTERNED.get(item);
+            final ItemStack canonical = (existing != null) ? existing.get() : null;
+            if (canonical != null) return canonical;
+            INTERNED.put(item, new WeakReference<>(item));
+            return item;
+        }
+    }
 }
@@ -0,0 +1,111 @@
+/*
+ *  Copyright 2021 ms5984 (Matt) <https://github.com/ms5984>
+ *
+ *  This file is part of MenuMan.
+ *
+ *  MenuMan is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU Lesser General Public License as
+ *  published by the Free Software Foundation, either version 3 of the
+ *  License, or (at your option) any later version.
+ *
+ *  MenuMan is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.github.ms5984.lib.menuman;
+
+import org.bukkit.inventory.Inventory;
+import org.bukkit.inventory.InventoryHolder;
+import org.bukkit.inventory.InventoryView;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Optional;
+
+/**
+ * The InventoryHolder of every Menu inventory.
+ * <p>
+ * Lets any event handler go from an Inventory (or InventoryView)
+ * to its Menu with a single {@link Inventory#getHolder()} call.
+ */
+public final class MenuHolder implements InventoryHolder {
+    private Menu menu;
+    private Inventory inventory;
+
+    /**
+     * Create a holder for a Menu.
+     *
+     * @param menu the owning Menu
+     */
+    MenuHolder(Menu menu) {
+        this.menu = menu;
+    }
+
+    /**
+     * Find the Menu which generated an Inventory.
+     * <p>
+     * Pooled inventories which are idle have no Menu.
+     *
+     * @param inventory an Inventory
+     * @return an Optional describing the owning Menu
+     */
+    public static Optional<Menu> findMenu(Inventory inventory) {
+        if (inventory == null) return Optional.empty();
+        final InventoryHolder holder = inventory.getHolder();
+        if (holder instanceof MenuHolder) {
+            return Optional.ofNullable(((MenuHolder) holder).menu);
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * Find the Menu shown in the top inventory of a view.
+     *
+     * @param view an InventoryView
+     * @return an Optional describing the owning Menu
+     */
+    public static Optional<Menu> findMenu(@NotNull InventoryView view) {
+        return findMenu(view.getTopInventory());
+    }
+
+    /**
+     * Get the Menu which owns this holder.
+     *
+     * @return the owning Menu or null if idle in a pool
+     */
+    public Menu getMenu() {
+        return menu;
+    }
+
+    /**
+     * Get the Inventory of this holder.
+     *
+     * @return the held Inventory
+     */
+    @Override
+    public @NotNull Inventory getInventory() {
+        return inventory;
+    }
+
+    /**
+     * Rebind this holder to another Menu when its inventory
+     * is taken from or returned to an {@link InventoryPool}.
+     *
+     * @param menu the new owning Menu or null
+     */
+    void bind(Menu menu) {
+        this.menu = menu;
+    }
+
+    /**
+     * Attach the generated Inventory to this holder.
+     *
+     * @param inventory generated Inventory
+     */
+    void setInventory(Inventory inventory) {
+        this.inventory = inventory;
+    }
+}
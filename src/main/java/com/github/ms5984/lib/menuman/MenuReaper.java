@@ -0,0 +1,141 @@
+/*
+ *  Copyright 2021 ms5984 (Matt) <https://github.com/ms5984>
+ *
+ *  This file is part of MenuMan.
+ *
+ *  MenuMan is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU Lesser General Public License as
+ *  published by the Free Software Foundation, either version 3 of the
+ *  License, or (at your option) any later version.
+ *
+ *  MenuMan is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.github.ms5984.lib.menuman;
+
+import org.bukkit.plugin.Plugin;
+
+import java.util.ArrayList;
+
+/**
+ * Library-wide task which releases menu inventories once the
+ * grace period after their last viewer closed has passed.
+ * <p>
+ * Pending releases are kept in a hashed timing wheel: scheduling,
+ * cancelling and expiring a release are O(1), and a single task
+ * runs (only while releases are pending) however many menus close.
+ * Cancelled entries are dropped lazily when their bucket comes around.
+ * <p><b>Not</b> async safe.
+ */
+final class MenuReaper implements Runnable {
+    private static final int WHEEL_SIZE = 64;
+    private static final int WHEEL_MASK = WHEEL_SIZE - 1;
+    private static final MenuReaper INSTANCE = new MenuReaper();
+    private final ArrayList<Menu>[] wheel;
+    private long currentTick;
+    private int pending;
+    private final LibraryTask task = new LibraryTask(this, true);
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private MenuReaper() {
+        wheel = new ArrayList[WHEEL_SIZE];
+        for (int i = 0; i < WHEEL_SIZE; ++i) {
+            wheel[i] = new ArrayList<>();
+        }
+    }
+
+    /**
+     * Get the library-wide reaper.
+     *
+     * @return the MenuReaper
+     */
+    static MenuReaper get() {
+        return INSTANCE;
+    }
+
+    /**
+     * Schedule the release of a menu's inventory.
+     * <p>
+     * Replaces any release already pending for the menu.
+     *
+     * @param menu a menu without viewers
+     * @param delayTicks grace period in ticks
+     */
+    void schedule(Menu menu, long delayTicks) {
+        final long deadline = currentTick + Math.max(1L, delayTicks);
+        menu.releaseDeadline = deadline;
+        wheel[(int) (deadline & WHEEL_MASK)].add(menu);
+        ++pending;
+        task.start(menu.getRegistry().getPlugin());
+    }
+
+    /**
+     * Cancel the pending release of a menu, if any.
+     *
+     * @param menu a menu which gained a viewer or was disposed
+     */
+    void cancel(Menu menu) {
+        menu.releaseDeadline = -1L;
+    }
+
+    /**
+     * Get the number of wheel entries awaiting their tick.
+     * <p>
+     * Includes cancelled entries not yet dropped.
+     *
+     * @return number of pending entries
+     */
+    int getPending() {
+        return pending;
+    }
+
+    /**
+     * Advance the wheel by one tick, releasing due menus.
+     */
+    @Override
+    public void run() {
+        final long tick = ++currentTick;
+        final ArrayList<Menu> bucket = wheel[(int) (tick & WHEEL_MASK)];
+        int kept = 0;
+        for (int i = 0; i < bucket.size(); ++i) {
+            final Menu menu = bucket.get(i);
+            final long deadline = menu.releaseDeadline;
+            if (deadline > tick) {
+                // due on a later turn of the wheel
+                bucket.set(kept++, menu);
+                continue;
+            }
+            if (deadline == tick) {
+                menu.releaseDeadline = -1L;
+                menu.release();
+            }
+        }
+        pending -= bucket.size() - kept;
+        bucket.subList(kept, bucket.size()).clear();
+        if (pending == 0) task.cancel();
+    }
+
+    /**
+     * Handle the disable of a plugin.
+     * <p>
+     * Drops the releases of the plugin's menus and moves the task
+     * to another plugin if the disabled one owned it.
+     *
+     * @param plugin a disabled plugin
+     */
+    void onDisable(Plugin plugin) {
+        Menu remaining = null;
+        for (ArrayList<Menu> bucket : wheel) {
+            final int before = bucket.size();
+            bucket.removeIf(menu -> menu.getRegistry().getPlugin() == plugin);
+            pending -= before - bucket.size();
+            if (remaining == null && !bucket.isEmpty()) remaining = bucket.get(0);
+        }
+        task.handOff(plugin, (remaining != null) ? remaining.getRegistry().getPlugin() : null);
+    }
+}
@@ -0,0 +1,271 @@
+/*
+ *  Copyright 2021 ms5984 (Matt) <https://github.com/ms5984>
+ *
+ *  This file is part of MenuMan.
+ *
+ *  MenuMan is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU Lesser General Public License as
+ *  published by the Free Software Foundation, either version 3 of the
+ *  License, or (at your option) any later version.
+ *
+ *  MenuMan is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.github.ms5984.lib.menuman;
+
+import org.bukkit.Bukkit;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.inventory.InventoryClickEvent;
+import org.bukkit.event.inventory.InventoryCloseEvent;
+import org.bukkit.event.inventory.InventoryDragEvent;
+import org.bukkit.event.inventory.InventoryOpenEvent;
+import org.bukkit.event.server.PluginDisableEvent;
+import org.bukkit.inventory.Inventory;
+import org.bukkit.inventory.InventoryHolder;
+import org.bukkit.plugin.Plugin;
+import org.bukkit.plugin.java.JavaPlugin;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.*;
+
+/**
+ * Routes inventory events to the Menus of a plugin.
+ * <p>
+ * A single listener is registered per plugin; events are passed to
+ * their Menu through the {@link MenuHolder} of the top Inventory, so
+ * the cost of an event does not grow with the number of menus.
+ * <p>
+ * Menus stay registered until {@link Menu#dispose()} is called or the
+ * plugin is disabled. Menus built with
+ * {@link MenuBuilder#setWeakRegistration(boolean)} are only held weakly
+ * while they have no open inventory.
+ */
+public final class MenuRegistry {
+    private static final Map<Plugin, MenuRegistry> REGISTRIES = new HashMap<>();
+    private final JavaPlugin plugin;
+    private final Set<Menu> registered = new HashSet<>();
+    private final Set<Menu> weaklyRegistered = Collections.newSetFromMap(new WeakHashMap<>());
+    private final InventoryPool inventoryPool = new InventoryPool();
+    private final List<ClickInterceptor> interceptors = new ArrayList<>();
+
+    private MenuRegistry(JavaPlugin plugin) {
+        this.plugin = plugin;
+    }
+
+    /**
+     * Get the registry of a plugin, registering its listener
+     * on first use.
+     *
+     * @param plugin your plugin
+     * @return the MenuRegistry of the plugin
+     */
+    public static synchronized MenuRegistry of(@NotNull JavaPlugin plugin) {
+        MenuRegistry registry = REGISTRIES.get(plugin);
+        if (registry == null) {
+            registry = new MenuRegistry(plugin);
+            Bukkit.getPluginManager().registerEvents(registry.new DispatchListener(), plugin);
+            REGISTRIES.put(plugin, registry);
+        }
+        return registry;
+    }
+
+    /**
+     * Get the plugin which owns this registry.
+     *
+     * @return the owning plugin
+     */
+    public JavaPlugin getPlugin() {
+        return plugin;
+    }
+
+    /**
+     * Get the pool of inventories shared by this registry's menus.
+     *
+     * @return the InventoryPool of the plugin
+     */
+    public InventoryPool getInventoryPool() {
+        return inventoryPool;
+    }
+
+    /**
+     * Add an interceptor which runs before the actions of every
+     * Menu of this plugin.
+     * <p>
+     * Only affects menus (and templates) created afterwards.
+     *
+     * @param interceptor a ClickInterceptor
+     * @return this MenuRegistry
+     */
+    public MenuRegistry addInterceptor(@NotNull ClickInterceptor interceptor) {
+        interceptors.add(interceptor);
+        return this;
+    }
+
+    /**
+     * Get the interceptors run before the actions of every menu.
+     *
+     * @return a copy of the plugin-wide interceptors
+     */
+    ClickInterceptor[] getInterceptors() {
+        return interceptors.toArray(new ClickInterceptor[0]);
+    }
+
+    /**
+     * Get the Menu which generated an Inventory, if it is one of ours.
+     *
+     * @param inventory an Inventory
+     * @return an Optional describing the owning Menu
+     */
+    public Optional<Menu> getMenu(Inventory inventory) {
+        return Optional.ofNullable(menuOf(inventory));
+    }
+
+    /**
+     * Get the number of Menus currently registered.
+     * <p>
+     * Weakly registered menus which have been reclaimed
+     * are not counted.
+     *
+     * @return number of registered menus
+     */
+    public int getMenuCount() {
+        return registered.size() + weaklyRegistered.size();
+    }
+
+    /**
+     * Dispose every Menu of this registry and empty its
+     * inventory pool.
+     * <p>
+     * Called automatically when the owning plugin is disabled.
+     */
+    public void disposeAll() {
+        final List<Menu> toDispose = new ArrayList<>(registered);
+        toDispose.addAll(weaklyRegistered);
+        for (Menu menu : toDispose) {
+            menu.dispose();
+        }
+        registered.clear();
+        weaklyRegistered.clear();
+        inventoryPool.clear();
+    }
+
+    /**
+     * Register a newly created Menu.
+     *
+     * @param menu a new Menu
+     * @param weak whether to hold the menu weakly while it is idle
+     */
+    void register(Menu menu, boolean weak) {
+        if (weak) {
+            weaklyRegistered.add(menu);
+        } else {
+            registered.add(menu);
+        }
+    }
+
+    /**
+     * Remove a Menu from this registry.
+     *
+     * @param menu a disposed Menu
+     */
+    void unregister(Menu menu) {
+        registered.remove(menu);
+        weaklyRegistered.remove(menu);
+    }
+
+    /**
+     * Find the live Menu of this registry which owns an Inventory.
+     *
+     * @param inventory the top inventory of an event
+     * @return the owning Menu or null
+     */
+    private Menu menuOf(Inventory inventory) {
+        final InventoryHolder holder = inventory.getHolder();
+        if (!(holder instanceof MenuHolder)) return null;
+        final Menu menu = ((MenuHolder) holder).getMenu();
+        return (menu != null && menu.getRegistry() == this && menu.owns(inventory)) ? menu : null;
+    }
+
+    /**
+     * Registered listener which passes Inventory events
+     * to the Menu that owns the top inventory.
+     */
+    final class DispatchListener implements Listener {
+        private DispatchListener() {}
+
+        /**
+         * Pass {@link InventoryClickEvent} to its Menu.
+         *
+         * @param e original click event
+         */
+        @EventHandler
+        public void onMenuClick(InventoryClickEvent e) {
+            final Menu menu = menuOf(e.getInventory());
+            if (menu != null) menu.onClick(e);
+        }
+
+        /**
+         * Pass {@link InventoryDragEvent} to its Menu.
+         *
+         * @param e original drag event
+         */
+        @EventHandler
+        public void onMenuDrag(InventoryDragEvent e) {
+            final Menu menu = menuOf(e.getInventory());
+            if (menu != null) menu.onDrag(e);
+        }
+
+        /**
+         * Pass {@link InventoryOpenEvent} to its Menu.
+         * <p>
+         * Runs last and skips cancelled opens so that
+         * viewer counts stay exact.
+         *
+         * @param e original open event
+         */
+        @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+        public void onMenuOpen(InventoryOpenEvent e) {
+            final Menu menu = menuOf(e.getInventory());
+            if (menu != null) menu.onOpen(e);
+        }
+
+        /**
+         * Pass {@link InventoryCloseEvent} to its Menu.
+         *
+         * @param e original close event
+         */
+        @EventHandler
+        public void onMenuClose(InventoryCloseEvent e) {
+            final Menu menu = menuOf(e.getInventory());
+            if (menu != null) menu.onClose(e);
+        }
+
+        /**
+         * Dispose all menus when the owning plugin is disabled.
+         *
+         * @param e original disable event
+         */
+        @EventHandler
+        public void onPluginDisable(PluginDisableEvent e) {
+            if (e.getPlugin() != plugin) {
+                return;
+            }
+            disposeAll();
+            MenuReaper.get().onDisable(plugin);
+            DeferredActions.get().onDisable(plugin);
+            MenuUpdater.get().onDisable(plugin);
+            MenuAnimator.get().onDisable(plugin);
+            LoadGovernor.get().onDisable(plugin);
+            synchronized (MenuRegistry.class) {
+                REGISTRIES.remove(plugin);
+            }
+        }
+    }
+}
@@ -0,0 +1,230 @@
+/*
+ *  Copyright 2021 ms5984 (Matt) <https://github.com/ms5984>
+ *
+ *  This file is part of MenuMan.
+ *
+ *  MenuMan is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU Lesser General Public License as
+ *  published by the Free Software Foundation, either version 3 of the
+ *  License, or (at your option) any later version.
+ *
+ *  MenuMan is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.github.ms5984.lib.menuman;
+
+import org.bukkit.inventory.ItemStack;
+import org.bukkit.plugin.java.JavaPlugin;
+
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+
+/**
+ * An immutable, shareable snapshot of a {@link MenuBuilder}.
+ * <p>
+ * The template renders its elements once and holds the slot
+ * arrays, actions and flags every Menu spawned from it shares.
+ * A spawned Menu only adds its own Inventory, viewers and any
+ * per-player overrides (which are copied on first write), so
+ * giving each player their own instance stays cheap.
+ */
+public final class MenuTemplate {
+    final ItemStack[] frame;
+    final ClickAction[] actions;
+    final ClickAction[][] typedActions;
+    final SlotSet elementSlots;
+    final SlotSet openSlots;
+    final SlotSet protectedSlots;
+    final CloseAction closeAction;
+    final Menu.InventoryRows numberOfRows;
+    final String title;
+    final boolean cancelClickLower;
+    final boolean allowPickupFromMenu;
+    final boolean allowShiftClickLower;
+    final long releaseDelay;
+    final boolean pooled;
+    final LoadGovernor.Priority updatePriority;
+    final ClickThrottle clickThrottle;
+    final ClickThrottle[] slotThrottles;
+    final ClickInterceptor[][] interceptors;
+    final AnimatedElement[] animations;
+    final int[] animationPeriods;
+    final long[] animatedSlots;
+    final MenuRegistry registry;
+    private String generatedTitle;
+
+    /**
+     * Create a template from the current contents of a builder.
+     *
+     * @param menuBuilder a MenuBuilder
+     * @param javaPlugin your plugin
+     */
+    MenuTemplate(MenuBuilder menuBuilder, JavaPlugin javaPlugin) {
+        this.numberOfRows = menuBuilder.numberOfRows;
+        this.title = menuBuilder.title;
+        this.cancelClickLower = menuBuilder.cancelLowerInvClick;
+        this.allowPickupFromMenu = menuBuilder.allowItemPickup;
+        this.allowShiftClickLower = menuBuilder.allowLowerInvShiftClick;
+        this.closeAction = menuBuilder.closeAction;
+        this.releaseDelay = menuBuilder.releaseDelay;
+        this.pooled = menuBuilder.pooledInventories;
+        this.updatePriority = menuBuilder.updatePriority;
+        this.clickThrottle = menuBuilder.clickThrottle;
+        if (menuBuilder.throttles.isEmpty()) {
+            this.slotThrottles = null;
+        } else {
+            this.slotThrottles = new ClickThrottle[numberOfRows.slotCount];
+            menuBuilder.throttles.forEach((index, throttle) -> slotThrottles[index] = throttle);
+        }
+        final ItemStack[] contents = new ItemStack[numberOfRows.slotCount];
+        this.actions = new ClickAction[numberOfRows.slotCount];
+        menuBuilder.items.forEach((index, element) -> contents[index] = element.getRendered());
+        menuBuilder.actions.forEach((index, action) -> actions[index] = action);
+        this.typedActions = new ClickAction[numberOfRows.slotCount][];
+        menuBuilder.typedActions.forEach((index, byType) -> typedActions[index] = byType);
+        final ItemStack fillerItem = Optional
+                .ofNullable(menuBuilder.fillerItem)
+                .map(MenuElement::getRendered)
+                .orElse(null);
+        if (fillerItem != null) {
+            for (int i = 0; i < contents.length; ++i) {
+                if (contents[i] == null) contents[i] = fillerItem;
+            }
+        }
+        if (menuBuilder.fillerAction != null) {
+            for (int i = 0; i < actions.length; ++i) {
+                if (actions[i] == null) actions[i] = menuBuilder.fillerAction;
+            }
+        }
+        long elementMask = 0L;
+        for (int i = 0; i < contents.length; ++i) {
+            if (contents[i] != null) elementMask |= 1L << i;
+        }
+        this.elementSlots = SlotSet.fromMask(elementMask);
+        // merge initial contents and elements into the frame used for every materialization
+        this.frame = new ItemStack[numberOfRows.slotCount];
+        if (menuBuilder.initialContents != null) {
+            System.arraycopy(menuBuilder.initialContents, 0, frame, 0, menuBuilder.initialContents.length);
+        }
+        for (int i = 0; i < contents.length; ++i) {
+            if (contents[i] != null) frame[i] = contents[i];
+        }
+        this.openSlots = menuBuilder.openSlots;
+        this.protectedSlots = SlotSet.all(numberOfRows).difference(openSlots).union(elementSlots);
+        this.registry = MenuRegistry.of(javaPlugin);
+        this.interceptors = flattenInterceptors(menuBuilder);
+        if (menuBuilder.animations.isEmpty()) {
+            this.animations = null;
+            this.animationPeriods = null;
+            this.animatedSlots = null;
+        } else {
+            this.animations = new AnimatedElement[numberOfRows.slotCount];
+            // slots grouped by period, as they change frame together
+            final TreeMap<Integer, Long> byPeriod = new TreeMap<>();
+            menuBuilder.animations.forEach((slot, animation) -> {
+                animations[slot] = animation;
+                byPeriod.merge(animation.period, 1L << slot, (a, b) -> a | b);
+            });
+            this.animationPeriods = new int[byPeriod.size()];
+            this.animatedSlots = new long[byPeriod.size()];
+            int i = 0;
+            for (Map.Entry<Integer, Long> entry : byPeriod.entrySet()) {
+                animationPeriods[i] = entry.getKey();
+                animatedSlots[i++] = entry.getValue();
+            }
+        }
+    }
+
+    /**
+     * Flatten the plugin, menu and element interceptor chains
+     * into one array per slot.
+     * <p>
+     * Slots sharing a chain share the array.
+     *
+     * @param menuBuilder a MenuBuilder
+     * @return interceptors by slot
+     */
+    private ClickInterceptor[][] flattenInterceptors(MenuBuilder menuBuilder) {
+        final ClickInterceptor[] global = registry.getInterceptors();
+        final ClickInterceptor[] base = Arrays.copyOf(global, global.length + menuBuilder.interceptors.size());
+        for (int i = 0; i < menuBuilder.interceptors.size(); ++i) {
+            base[global.length + i] = menuBuilder.interceptors.get(i);
+        }
+        final ClickInterceptor[][] bySlot = new ClickInterceptor[numberOfRows.slotCount][];
+        Arrays.fill(bySlot, base);
+        final Map<ClickInterceptor[], ClickInterceptor[]> flattened = new IdentityHashMap<>();
+        menuBuilder.slotInterceptors.forEach((slot, chain) -> bySlot[slot] = flattened.computeIfAbsent(chain, c -> {
+            final ClickInterceptor[] all = Arrays.copyOf(base, base.length + c.length);
+            System.arraycopy(c, 0, all, base.length, c.length);
+            return all;
+        }));
+        return bySlot;
+    }
+
+    /**
+     * Spawn a new Menu from this template.
+     * <p>
+     * The Menu is registered weakly: it receives events while
+     * open and is reclaimed once you drop your reference to it
+     * (see {@link MenuBuilder#setWeakRegistration(boolean)}).
+     * Use one instance per player for per-player content.
+     *
+     * @return a new Menu sharing this template's data
+     */
+    public Menu spawn() {
+        return new Menu(this, true);
+    }
+
+    /**
+     * Get the number of rows of spawned menus.
+     *
+     * @return number of rows
+     */
+    public Menu.InventoryRows getNumberOfRows() {
+        return numberOfRows;
+    }
+
+    /**
+     * Get the title of spawned menus.
+     * <p>
+     * If null, the first Menu spawned generates a title which
+     * all menus of the template then share.
+     *
+     * @return the title or null
+     */
+    public String getTitle() {
+        return title;
+    }
+
+    /**
+     * Get the title of a Menu spawned from this template.
+     * <p>
+     * Menus of a template share one title so they can switch in
+     * place and share pooled inventories.
+     *
+     * @param menu a new Menu of this template
+     * @return the title or one generated for the first menu
+     */
+    String titleFor(Menu menu) {
+        if (title != null) return title;
+        if (generatedTitle == null) generatedTitle = "Menu#"+menu.hashCode();
+        return generatedTitle;
+    }
+
+    /**
+     * Get the registry which routes events to spawned menus.
+     *
+     * @return the MenuRegistry of the template's plugin
+     */
+    public MenuRegistry getRegistry() {
+        return registry;
+    }
+}
@@ -0,0 +1,129 @@
+/*
+ *  Copyright 2021 ms5984 (Matt) <https://github.com/ms5984>
+ *
+ *  This file is part of MenuMan.
+ *
+ *  MenuMan is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU Lesser General Public License as
+ *  published by the Free Software Foundation, either version 3 of the
+ *  License, or (at your option) any later version.
+ *
+ *  MenuMan is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.github.ms5984.lib.menuman;
+
+import org.bukkit.plugin.Plugin;
+
+import java.util.ArrayList;
+
+/**
+ * Library-wide task which sends menu slot updates to viewers.
+ * <p>
+ * Menus changed through {@link Menu#update(int, MenuElement)} are
+ * queued once per tick however many slots change, and flushed
+ * together in a single task on the next tick.
+ * <p><b>Not</b> async safe.
+ */
+final class MenuUpdater implements Runnable {
+    private static final MenuUpdater INSTANCE = new MenuUpdater();
+    private ArrayList<Menu> pending = new ArrayList<>();
+    private ArrayList<Menu> draining = new ArrayList<>();
+    private final LibraryTask task = new LibraryTask(this, false);
+
+    private MenuUpdater() {}
+
+    /**
+     * Get the library-wide updater.
+     *
+     * @return the MenuUpdater
+     */
+    static MenuUpdater get() {
+        return INSTANCE;
+    }
+
+    /**
+     * Queue a menu for the next flush.
+     * <p>
+     * Called by the menu when its first slot changes since its
+     * last flush, so each menu is queued at most once.
+     *
+     * @param menu a menu with changed slots
+     */
+    void queue(Menu menu) {
+        pending.add(menu);
+        schedule(menu);
+    }
+
+    private void schedule(Menu menu) {
+        if (task.isScheduled()) return;
+        task.start(menu.getRegistry().getPlugin());
+        LoadGovernor.get().watch(task.getOwner());
+    }
+
+    /**
+     * Get the plugin the next flush is scheduled under.
+     *
+     * @return the plugin or null if no flush is scheduled
+     */
+    Plugin getOwner() {
+        return task.getOwner();
+    }
+
+    /**
+     * Get the number of menus waiting for the next flush.
+     *
+     * @return number of queued menus
+     */
+    int getPending() {
+        return pending.size();
+    }
+
+    /**
+     * Flush every queued menu.
+     * <p>
+     * Menus backed off by the {@link LoadGovernor} stay queued
+     * and keep collecting changes.
+     */
+    @Override
+    public void run() {
+        // menus updated while flushing are sent on the following tick
+        task.ran();
+        final ArrayList<Menu> toFlush = pending;
+        pending = draining;
+        draining = toFlush;
+        final LoadGovernor governor = LoadGovernor.get();
+        for (Menu menu : toFlush) {
+            if (governor.allows(menu.getTemplate().updatePriority)) {
+                menu.flush();
+            } else {
+                governor.deferredUpdate();
+                pending.add(menu);
+                schedule(menu);
+            }
+        }
+        toFlush.clear();
+    }
+
+    /**
+     * Handle the disable of a plugin.
+     * <p>
+     * Drops the plugin's menus and moves the task to another
+     * plugin if the disabled one owned it.
+     *
+     * @param plugin a disabled plugin
+     */
+    void onDisable(Plugin plugin) {
+        pending.removeIf(menu -> {
+            if (menu.getRegistry().getPlugin() != plugin) return false;
+            menu.clearDirty();
+            return true;
+        });
+        task.handOff(plugin, pending.isEmpty() ? null : pending.get(0).getRegistry().getPlugin());
+    }
+}
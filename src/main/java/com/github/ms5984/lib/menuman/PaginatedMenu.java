@@ -0,0 +1,517 @@
+/*
+ *  Copyright 2021 ms5984 (Matt) <https://github.com/ms5984>
+ *
+ *  This file is part of MenuMan.
+ *
+ *  MenuMan is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU Lesser General Public License as
+ *  published by the Free Software Foundation, either version 3 of the
+ *  License, or (at your option) any later version.
+ *
+ *  MenuMan is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.github.ms5984.lib.menuman;
+
+import org.bukkit.Bukkit;
+import org.bukkit.entity.Player;
+import org.bukkit.inventory.ItemStack;
+import org.bukkit.inventory.meta.ItemMeta;
+import org.bukkit.plugin.java.JavaPlugin;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+import java.util.logging.Level;
+
+/**
+ * A menu which pages through a list of entries.
+ * <p>
+ * Pages are Menus spawned from one shared {@link MenuTemplate} and
+ * rendered on first view: only the entries of that page are fetched
+ * from the {@link MenuDataSource} and rendered. A page shows
+ * placeholders until its entries arrive; they are then applied on the
+ * main thread in one go, so a slow source never stalls the tick. The
+ * pages next to a viewed page are prefetched, and the most recently
+ * viewed pages are kept, so paging back and forth does not render
+ * again; memory is bounded by the number of kept pages, not the
+ * number of entries.
+ * <p>
+ * Menus over a list can be filtered and sorted. The {@link SearchIndex}
+ * and the order of every registered comparator are built when the
+ * menu is created and again on {@link #invalidate()}, so a change of
+ * filter or order only walks int arrays and renders the pages being
+ * viewed.
+ * <p><b>Not</b> async safe.
+ *
+ * @param <T> type of the entries
+ */
+public final class PaginatedMenu<T> {
+    private final MenuTemplate template;
+    private final MenuDataSource<? extends T> source;
+    private final Function<? super T, ItemStack> renderer;
+    private final EntryAction<? super T> entryAction;
+    private final int[] contentSlots;
+    private final int previousSlot;
+    private final int nextSlot;
+    private final ItemStack previousItem;
+    private final ItemStack nextItem;
+    private final ItemStack placeholder;
+    private final boolean prefetch;
+    private final int cacheSize;
+    private final LinkedHashMap<Integer, Menu> pages;
+    private final Set<Menu> detached = new HashSet<>();
+    private final List<? extends T> list;
+    private final Function<? super T, String> searchText;
+    private final Map<String, Comparator<? super T>> sorts;
+    private final Map<String, int[]> orders = new HashMap<>();
+    private SearchIndex index;
+    private String query;
+    private String sortName;
+    private int[] view;
+    private boolean trimScheduled;
+
+    /**
+     * Create a new PaginatedMenu using the data from a builder.
+     *
+     * @param builder a PaginatedMenuBuilder
+     * @param template the template shared by every page
+     * @param source the source of entries to page through
+     * @param list the list behind the source or null if not a list
+     */
+    PaginatedMenu(PaginatedMenuBuilder<T> builder, MenuTemplate template, MenuDataSource<? extends T> source, List<? extends T> list) {
+        this.template = template;
+        this.source = source;
+        this.list = list;
+        this.searchText = builder.searchText;
+        this.sorts = new HashMap<>(builder.sorts);
+        this.renderer = builder.renderer;
+        this.entryAction = builder.entryAction;
+        this.contentSlots = builder.contentSlots.toArray();
+        this.previousSlot = builder.previousSlot;
+        this.nextSlot = builder.nextSlot;
+        this.previousItem = builder.previousItem;
+        this.nextItem = builder.nextItem;
+        this.placeholder = builder.placeholder;
+        this.cacheSize = builder.cacheSize;
+        // neighbours must not push the viewed page out of the cache
+        this.prefetch = builder.prefetch && cacheSize >= 3;
+        this.pages = new LinkedHashMap<>(16, 0.75f, true);
+        if (list != null) buildLookups();
+    }
+
+    /**
+     * Get the number of entries shown on each page.
+     *
+     * @return entries per page
+     */
+    public int getPageSize() {
+        return contentSlots.length;
+    }
+
+    /**
+     * Get the number of pages.
+     * <p>
+     * There is always at least one (possibly empty) page.
+     *
+     * @return number of pages
+     */
+    public int getPageCount() {
+        return Math.max(1, (getEntryCount() + contentSlots.length - 1) / contentSlots.length);
+    }
+
+    /**
+     * Get the number of entries shown across all pages.
+     * <p>
+     * Only entries matching the current filter are counted.
+     *
+     * @return number of entries
+     */
+    public int getEntryCount() {
+        return (view != null) ? view.length : source.size();
+    }
+
+    /**
+     * Get the number of rendered pages currently kept.
+     *
+     * @return number of cached pages
+     */
+    public int getCachedPageCount() {
+        return pages.size();
+    }
+
+    /**
+     * Get the Menu of a page, rendering it if needed.
+     * <p>
+     * The page may still be loading; it is filled in once
+     * its entries have been fetched. If the fetch fails, the page
+     * shows the layout again and is fetched afresh when next shown.
+     *
+     * @param page zero-indexed page
+     * @return the Menu of the page
+     * @throws IllegalArgumentException if the page does not exist
+     */
+    public Menu getPage(int page) throws IllegalArgumentException {
+        if (page < 0 || page >= getPageCount()) throw new IllegalArgumentException("That is not a valid page!");
+        if (prefetch) {
+            if (page > 0) cachedPage(page - 1);
+            if (page + 1 < getPageCount()) cachedPage(page + 1);
+        }
+        // requested last, so it is the most recently used
+        return cachedPage(page);
+    }
+
+    private Menu cachedPage(int page) {
+        Menu menu = pages.get(page);
+        if (menu == null || menu.isDisposed()) {
+            menu = render(page);
+            pages.put(page, menu);
+            trimCache();
+        }
+        return menu;
+    }
+
+    /**
+     * Evict the least recently used pages without viewers until
+     * the cache is back within its size.
+     * <p>
+     * The most recently used page is always kept. Detached pages
+     * are disposed once their viewers have left.
+     */
+    private void trimCache() {
+        detached.removeIf(menu -> {
+            if (menu.getViewerCount() > 0) return false;
+            menu.dispose();
+            return true;
+        });
+        int candidates = pages.size() - 1;
+        final Iterator<Menu> cached = pages.values().iterator();
+        while (pages.size() > cacheSize && candidates-- > 0) {
+            final Menu menu = cached.next();
+            // pages being viewed stay until closed
+            if (menu.getViewerCount() > 0) continue;
+            cached.remove();
+            menu.dispose();
+        }
+    }
+
+    /**
+     * Trim the cache on the next tick.
+     * <p>
+     * The last viewer of a page leaves inside its close event, where
+     * the page must not be disposed yet.
+     */
+    private void scheduleTrim() {
+        if (trimScheduled) return;
+        trimScheduled = true;
+        Bukkit.getScheduler().runTask(template.registry.getPlugin(), () -> {
+            trimScheduled = false;
+            trimCache();
+        });
+    }
+
+    /**
+     * Open the first page for the given player.
+     *
+     * @param player player to open menu for
+     */
+    public void open(Player player) {
+        open(player, 0);
+    }
+
+    /**
+     * Open a page for the given player.
+     *
+     * @param player player to open menu for
+     * @param page zero-indexed page
+     * @throws IllegalArgumentException if the page does not exist
+     */
+    public void open(Player player, int page) throws IllegalArgumentException {
+        getPage(page).open(player);
+    }
+
+    /**
+     * Drop every rendered page after the entries have changed.
+     * <p>
+     * Pages are rendered again when next shown; pages which are
+     * open stay as they are until closed.
+     */
+    public void invalidate() {
+        if (list != null) buildLookups();
+        if (view != null) {
+            updateView();
+            return;
+        }
+        for (Menu menu : new ArrayList<>(pages.values())) {
+            if (menu.getViewerCount() == 0) menu.dispose();
+        }
+        pages.clear();
+    }
+
+    /**
+     * Show only the entries whose text contains the query.
+     * <p>
+     * Queries shorter than three characters match the start of
+     * the text instead. Pages being viewed are updated in place;
+     * other pages are rendered again when next shown.
+     *
+     * @param query search text or null to show every entry
+     * @throws IllegalStateException if the menu was not created from a list
+     */
+    public void filter(String query) throws IllegalStateException {
+        requireList();
+        this.query = (query == null || SearchIndex.normalize(query).isEmpty()) ? null : query;
+        updateView();
+    }
+
+    /**
+     * Get the current filter.
+     *
+     * @return the query or null if not filtered
+     */
+    public String getFilter() {
+        return query;
+    }
+
+    /**
+     * Sort the entries by a registered order.
+     * <p>
+     * Orders are computed ahead, when the menu is created or
+     * invalidated. Pages being viewed are updated in place.
+     *
+     * @param name name of the order or null for list order
+     * @throws IllegalArgumentException if no such order is registered
+     * @throws IllegalStateException if the menu was not created from a list
+     * @see PaginatedMenuBuilder#addSort(String, Comparator)
+     */
+    public void sortBy(String name) throws IllegalArgumentException, IllegalStateException {
+        requireList();
+        if (name != null && !sorts.containsKey(name)) throw new IllegalArgumentException("That is not a registered sort!");
+        this.sortName = name;
+        updateView();
+    }
+
+    /**
+     * Get the name of the current order.
+     *
+     * @return the order or null if in list order
+     */
+    public String getSort() {
+        return sortName;
+    }
+
+    /**
+     * Dispose of every page of this menu.
+     *
+     * @see Menu#dispose()
+     */
+    public void dispose() {
+        for (Menu menu : new ArrayList<>(pages.values())) {
+            menu.dispose();
+        }
+        pages.clear();
+        detached.forEach(Menu::dispose);
+        detached.clear();
+    }
+
+    private Menu render(int page) {
+        final Menu menu = template.spawn();
+        // a page kept only for its viewers may go once they leave
+        menu.setIdleListener(this::scheduleTrim);
+        populate(menu, page);
+        return menu;
+    }
+
+    private void populate(Menu menu, int page) {
+        if (page > 0) {
+            menu.setOverride(previousSlot, previousItem, click -> turnTo(click, page - 1));
+        } else {
+            menu.clearOverride(previousSlot);
+        }
+        if (page + 1 < getPageCount()) {
+            menu.setOverride(nextSlot, nextItem, click -> turnTo(click, page + 1));
+        } else {
+            menu.clearOverride(nextSlot);
+        }
+        final int offset = page * contentSlots.length;
+        if (view != null) {
+            fill(menu, viewWindow(view, offset));
+            return;
+        }
+        final CompletableFuture<? extends List<? extends T>> future = source.fetch(offset, contentSlots.length);
+        if (future.isDone() && !future.isCompletedExceptionally()) {
+            // already available, render at once
+            fill(menu, future.join());
+            return;
+        }
+        if (placeholder != null) {
+            for (int slot : contentSlots) {
+                menu.setOverride(slot, placeholder, null);
+            }
+        }
+        final JavaPlugin plugin = template.registry.getPlugin();
+        future.whenComplete((entries, ex) -> {
+            if (ex != null) plugin.getLogger().log(Level.WARNING, "Unable to fetch menu page " + page, ex);
+            // apply the whole page in a single main thread task
+            Bukkit.getScheduler().runTask(plugin, () -> {
+                if (menu.isDisposed()) return;
+                if (ex == null) {
+                    fill(menu, entries);
+                    return;
+                }
+                // show the layout again; the page is fetched afresh when next shown
+                for (int slot : contentSlots) {
+                    menu.clearOverride(slot);
+                }
+                if (!pages.remove(page, menu)) return;
+                if (menu.getViewerCount() > 0) {
+                    detached.add(menu);
+                } else {
+                    menu.dispose();
+                }
+            });
+        });
+    }
+
+    private void fill(Menu menu, List<? extends T> entries) {
+        final int count = Math.min(entries.size(), contentSlots.length);
+        for (int i = 0; i < count; ++i) {
+            final T entry = entries.get(i);
+            final ClickAction action = (entryAction != null) ? click -> entryAction.onClick(click, entry) : null;
+            menu.setOverride(contentSlots[i], renderer.apply(entry), action);
+        }
+        // slots past the last entry show the layout again
+        for (int i = count; i < contentSlots.length; ++i) {
+            menu.clearOverride(contentSlots[i]);
+        }
+    }
+
+    private List<T> viewWindow(int[] view, int offset) {
+        final int size = Math.max(0, Math.min(view.length - offset, contentSlots.length));
+        return new AbstractList<T>() {
+            @Override
+            public T get(int i) {
+                return list.get(view[offset + i]);
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+        };
+    }
+
+    private void requireList() throws IllegalStateException {
+        if (list == null) throw new IllegalStateException("Only menus created from a list can be searched or sorted!");
+    }
+
+    /**
+     * Recompute the visible entries and update the viewed pages.
+     */
+    private void updateView() {
+        if (query == null && sortName == null) {
+            view = null;
+        } else {
+            final int[] order = (sortName != null) ? orders.get(sortName) : null;
+            final long[] matches = (query != null) ? index().match(query) : null;
+            final int size = list.size();
+            final int[] visible = new int[size];
+            int count = 0;
+            for (int j = 0; j < size; ++j) {
+                final int i = (order != null) ? order[j] : j;
+                if (matches == null || (matches[i >>> 6] & (1L << i)) != 0L) visible[count++] = i;
+            }
+            view = (count == size) ? visible : Arrays.copyOf(visible, count);
+        }
+        // re-render only the pages being viewed
+        final List<Map.Entry<Integer, Menu>> cached = new ArrayList<>(pages.entrySet());
+        pages.clear();
+        final int pageCount = getPageCount();
+        for (Map.Entry<Integer, Menu> entry : cached) {
+            final Menu menu = entry.getValue();
+            if (menu.getViewerCount() == 0) {
+                menu.dispose();
+                continue;
+            }
+            final int page = Math.min(entry.getKey(), pageCount - 1);
+            populate(menu, page);
+            final Menu kept = pages.putIfAbsent(page, menu);
+            if (kept != null) {
+                // viewed pages past the end clamp to the same page; one is kept for all viewers
+                detached.add(menu);
+                for (Player viewer : new ArrayList<>(menu.getViewers())) {
+                    menu.switchTo(viewer, kept);
+                }
+            }
+        }
+    }
+
+    /**
+     * Build the search index and the order of every registered sort.
+     * <p>
+     * Without a search text function the index needs every entry
+     * rendered, so it is left to the first filter instead.
+     */
+    private void buildLookups() {
+        index = (searchText != null) ? buildIndex() : null;
+        orders.clear();
+        sorts.forEach((name, comparator) -> orders.put(name,
+                SearchIndex.sortIndexes(list.size(), (a, b) -> comparator.compare(list.get(a), list.get(b)))));
+    }
+
+    private SearchIndex buildIndex() {
+        final String[] texts = new String[list.size()];
+        for (int i = 0; i < texts.length; ++i) {
+            final T entry = list.get(i);
+            texts[i] = (searchText != null) ? searchText.apply(entry) : itemText(renderer.apply(entry));
+        }
+        return new SearchIndex(texts);
+    }
+
+    private SearchIndex index() {
+        if (index == null) index = buildIndex();
+        return index;
+    }
+
+    private static String itemText(ItemStack item) {
+        if (item == null || !item.hasItemMeta()) return null;
+        final ItemMeta meta = item.getItemMeta();
+        final StringBuilder sb = new StringBuilder();
+        if (meta.hasDisplayName()) sb.append(meta.getDisplayName());
+        if (meta.hasLore()) {
+            for (String line : meta.getLore()) {
+                sb.append('\n').append(line);
+            }
+        }
+        return sb.toString();
+    }
+
+    private void turnTo(MenuClick click, int page) {
+        final Player player = click.player;
+        // pages share rows and title, so the window can usually stay open
+        final Menu current = MenuHolder.findMenu(click.getInventoryView()).orElse(null);
+        if (current != null && page < getPageCount()) {
+            current.switchTo(player, getPage(page));
+            return;
+        }
+        // openInventory must not be called from InventoryClickEvent handler
+        DeferredActions.get().defer(template.registry.getPlugin(), player, () -> {
+            if (page < getPageCount()) open(player, page);
+        });
+    }
+}
@@ -0,0 +1,326 @@
+/*
+ *  Copyright 2021 ms5984 (Matt) <https://github.com/ms5984>
+ *
+ *  This file is part of MenuMan.
+ *
+ *  MenuMan is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU Lesser General Public License as
+ *  published by the Free Software Foundation, either version 3 of the
+ *  License, or (at your option) any later version.
+ *
+ *  MenuMan is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.github.ms5984.lib.menuman;
+
+import org.bukkit.Material;
+import org.bukkit.inventory.ItemStack;
+import org.bukkit.plugin.java.JavaPlugin;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Fluid interface builder of menus which page through a list.
+ * <p>
+ * A content region of the menu shows one page of entries at a time
+ * and two navigation slots move between pages. Everything else (filler,
+ * decoration, close action...) is set up on the underlying
+ * {@link MenuBuilder}, which every page shares.
+ *
+ * @param <T> type of the entries
+ */
+public final class PaginatedMenuBuilder<T> {
+    /**
+     * Builder of the layout shared by every page.
+     */
+    protected final MenuBuilder menuBuilder;
+    /**
+     * Slots which show the entries of a page.
+     */
+    protected SlotSet contentSlots;
+    /**
+     * Slot of the previous page button.
+     */
+    protected int previousSlot;
+    /**
+     * Slot of the next page button.
+     */
+    protected int nextSlot;
+    /**
+     * Item of the previous page button.
+     */
+    protected ItemStack previousItem = new ItemStack(Material.ARROW);
+    /**
+     * Item of the next page button.
+     */
+    protected ItemStack nextItem = new ItemStack(Material.ARROW);
+    /**
+     * Function rendering an entry as an item.
+     */
+    protected Function<? super T, ItemStack> renderer;
+    /**
+     * Callback to run on entry click.
+     */
+    protected EntryAction<? super T> entryAction;
+    /**
+     * Maximum number of rendered pages kept.
+     */
+    protected int cacheSize = 8;
+    /**
+     * Item shown in content slots while a page loads.
+     */
+    protected ItemStack placeholder;
+    /**
+     * Load the pages next to each viewed page in advance.
+     */
+    protected boolean prefetch = true;
+    /**
+     * Function giving the searchable text of an entry.
+     */
+    protected Function<? super T, String> searchText;
+    /**
+     * Named orders which entries can be sorted by.
+     */
+    protected final Map<String, Comparator<? super T>> sorts = new LinkedHashMap<>();
+
+    /**
+     * Create a new PaginatedMenuBuilder with a number of rows and a title.
+     * <p>
+     * By default, entries fill every row but the last, whose first
+     * and last slots hold the previous and next page buttons. A menu
+     * of one row shows entries in slots 1-7 instead.
+     *
+     * @param rows number of rows in final Inventory
+     * @param title Title of generated inventory
+     */
+    public PaginatedMenuBuilder(@NotNull Menu.InventoryRows rows, String title) {
+        this.menuBuilder = new MenuBuilder(rows, title);
+        final int lastRow = rows.ordinal();
+        this.previousSlot = lastRow * 9;
+        this.nextSlot = rows.slotCount - 1;
+        this.contentSlots = (lastRow == 0) ? SlotSet.range(1, 8) : SlotSet.range(0, lastRow * 9);
+    }
+
+    /**
+     * Get the builder of the layout shared by every page.
+     * <p>
+     * Elements assigned to content or navigation slots are
+     * covered by entries and buttons.
+     *
+     * @return the underlying MenuBuilder
+     */
+    public MenuBuilder getMenuBuilder() {
+        return menuBuilder;
+    }
+
+    /**
+     * Set the slots which show the entries of a page.
+     * <p>
+     * Entries are laid out in ascending slot order.
+     *
+     * @param slots a SlotSet of content slots
+     * @return this PaginatedMenuBuilder
+     * @throws IllegalArgumentException if empty, outside of inventory
+     * range or including a navigation slot
+     */
+    public PaginatedMenuBuilder<T> setContentSlots(@NotNull SlotSet slots) throws IllegalArgumentException {
+        if (slots.isEmpty() || slots.last() >= menuBuilder.numberOfRows.slotCount) {
+            throw new IllegalArgumentException("That is not a valid slot!");
+        }
+        if (slots.contains(previousSlot) || slots.contains(nextSlot)) {
+            throw new IllegalArgumentException("Content slots cannot include navigation slots!");
+        }
+        this.contentSlots = slots;
+        return this;
+    }
+
+    /**
+     * Set the slot and item of the previous page button.
+     * <p>
+     * The button is only shown on pages after the first.
+     *
+     * @param slot slot of the button
+     * @param item item of the button
+     * @return this PaginatedMenuBuilder
+     * @throws IllegalArgumentException if slot outside of inventory range
+     * or a content slot
+     */
+    public PaginatedMenuBuilder<T> setPreviousButton(int slot, @NotNull ItemStack item) throws IllegalArgumentException {
+        checkNavigationSlot(slot);
+        this.previousSlot = slot;
+        this.previousItem = item;
+        return this;
+    }
+
+    /**
+     * Set the slot and item of the next page button.
+     * <p>
+     * The button is only shown on pages before the last.
+     *
+     * @param slot slot of the button
+     * @param item item of the button
+     * @return this PaginatedMenuBuilder
+     * @throws IllegalArgumentException if slot outside of inventory range
+     * or a content slot
+     */
+    public PaginatedMenuBuilder<T> setNextButton(int slot, @NotNull ItemStack item) throws IllegalArgumentException {
+        checkNavigationSlot(slot);
+        this.nextSlot = slot;
+        this.nextItem = item;
+        return this;
+    }
+
+    /**
+     * Set the function which renders each entry as an item.
+     * <p>
+     * Only entries of pages being shown are rendered.
+     *
+     * @param renderer a function of entry to item
+     * @return this PaginatedMenuBuilder
+     */
+    public PaginatedMenuBuilder<T> setRenderer(@NotNull Function<? super T, ItemStack> renderer) {
+        this.renderer = renderer;
+        return this;
+    }
+
+    /**
+     * Define a callback to run when an entry is clicked.
+     * <p>
+     * Null by default; set to null to disable.
+     *
+     * @param entryAction an EntryAction or null for none
+     * @return this PaginatedMenuBuilder
+     */
+    public PaginatedMenuBuilder<T> setEntryAction(EntryAction<? super T> entryAction) {
+        this.entryAction = entryAction;
+        return this;
+    }
+
+    /**
+     * Set the number of rendered pages to keep.
+     * <p>
+     * The least recently shown pages beyond this number are
+     * disposed once nobody views them. Defaults to 8.
+     *
+     * @param pages number of pages to keep
+     * @return this PaginatedMenuBuilder
+     * @throws IllegalArgumentException if pages is less than 1
+     */
+    public PaginatedMenuBuilder<T> setCacheSize(int pages) throws IllegalArgumentException {
+        if (pages < 1) throw new IllegalArgumentException("Cache size must be at least 1!");
+        this.cacheSize = pages;
+        return this;
+    }
+
+    /**
+     * Set the item shown in each content slot while the entries of
+     * a page are being fetched.
+     * <p>
+     * Null by default, which shows the layout of the underlying
+     * MenuBuilder until the page has loaded.
+     *
+     * @param placeholder an item or null
+     * @return this PaginatedMenuBuilder
+     */
+    public PaginatedMenuBuilder<T> setPlaceholder(ItemStack placeholder) {
+        this.placeholder = placeholder;
+        return this;
+    }
+
+    /**
+     * Should the pages before and after a viewed page be fetched
+     * and rendered in advance?
+     * <p>
+     * Only takes effect with a cache size of 3 or more, so a page
+     * is never evicted by its own neighbours. Defaults to true.
+     *
+     * @param prefetch true to prefetch adjacent pages
+     * @return this PaginatedMenuBuilder
+     */
+    public PaginatedMenuBuilder<T> setPrefetch(boolean prefetch) {
+        this.prefetch = prefetch;
+        return this;
+    }
+
+    /**
+     * Set the function giving the text an entry is searched by.
+     * <p>
+     * By default, the display name and lore of the rendered item
+     * are searched. See {@link PaginatedMenu#filter(String)}.
+     *
+     * @param searchText a function of entry to text or null for default
+     * @return this PaginatedMenuBuilder
+     */
+    public PaginatedMenuBuilder<T> setSearchText(Function<? super T, String> searchText) {
+        this.searchText = searchText;
+        return this;
+    }
+
+    /**
+     * Register a named order which entries can be sorted by.
+     * <p>
+     * See {@link PaginatedMenu#sortBy(String)}.
+     *
+     * @param name name of the order
+     * @param comparator a comparator of entries
+     * @return this PaginatedMenuBuilder
+     */
+    public PaginatedMenuBuilder<T> addSort(@NotNull String name, @NotNull Comparator<? super T> comparator) {
+        sorts.put(name, comparator);
+        return this;
+    }
+
+    /**
+     * Create the PaginatedMenu specified by this builder over a list.
+     * <p>
+     * The list is read (not copied) whenever a page is rendered, so it
+     * should support fast random access. Menus over a list can be
+     * searched and sorted.
+     *
+     * @param yourPlugin an instance of your plugin
+     * @param entries the entries to page through
+     * @return new PaginatedMenu initialized with this object's contents
+     * @throws IllegalStateException if no renderer was set
+     */
+    public PaginatedMenu<T> create(JavaPlugin yourPlugin, @NotNull List<? extends T> entries) throws IllegalStateException {
+        if (renderer == null) throw new IllegalStateException("No renderer set!");
+        return new PaginatedMenu<>(this, menuBuilder.createTemplate(yourPlugin), MenuDataSource.of(entries), entries);
+    }
+
+    /**
+     * Create the PaginatedMenu specified by this builder over a
+     * data source.
+     * <p>
+     * Pages are fetched from the source as they are viewed (and
+     * prefetched if enabled); a page shows placeholders until its
+     * entries arrive.
+     *
+     * @param yourPlugin an instance of your plugin
+     * @param source the source of entries to page through
+     * @return new PaginatedMenu initialized with this object's contents
+     * @throws IllegalStateException if no renderer was set
+     */
+    public PaginatedMenu<T> create(JavaPlugin yourPlugin, @NotNull MenuDataSource<? extends T> source) throws IllegalStateException {
+        if (renderer == null) throw new IllegalStateException("No renderer set!");
+        return new PaginatedMenu<>(this, menuBuilder.createTemplate(yourPlugin), source, null);
+    }
+
+    private void checkNavigationSlot(int slot) throws IllegalArgumentException {
+        if (slot < 0 || slot >= menuBuilder.numberOfRows.slotCount) {
+            throw new IllegalArgumentException("That is not a valid slot!");
+        }
+        if (contentSlots.contains(slot)) {
+            throw new IllegalArgumentException("Content slots cannot include navigation slots!");
+        }
+    }
+}
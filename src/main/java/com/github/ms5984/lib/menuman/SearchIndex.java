@@ -0,0 +1,208 @@
+/*
+ *  Copyright 2021 ms5984 (Matt) <https://github.com/ms5984>
+ *
+ *  This file is part of MenuMan.
+ *
+ *  MenuMan is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU Lesser General Public License as
+ *  published by the Free Software Foundation, either version 3 of the
+ *  License, or (at your option) any later version.
+ *
+ *  MenuMan is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.github.ms5984.lib.menuman;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.IntBinaryOperator;
+
+/**
+ * Text index over the entries of a {@link PaginatedMenu}.
+ * <p>
+ * Queries of three or more characters match anywhere in an entry's
+ * text through trigram postings: only entries containing every
+ * trigram of the query are checked. Shorter queries match the start
+ * of the text through a binary search of the entries sorted by text.
+ * Matching is case-insensitive and ignores color codes.
+ */
+final class SearchIndex {
+    private final String[] texts;
+    private final Map<Long, int[]> postings;
+    private final int[] byText;
+
+    /**
+     * Build an index of entry texts.
+     *
+     * @param rawTexts text of each entry, by entry index
+     */
+    SearchIndex(String[] rawTexts) {
+        final int size = rawTexts.length;
+        this.texts = new String[size];
+        for (int i = 0; i < size; ++i) {
+            texts[i] = normalize(rawTexts[i]);
+        }
+        // postings are grown in place with their length in the first element, then trimmed
+        final Map<Long, int[]> growing = new HashMap<>();
+        for (int i = 0; i < size; ++i) {
+            final String text = texts[i];
+            for (int j = 0; j + 3 <= text.length(); ++j) {
+                final Long trigram = trigram(text, j);
+                int[] list = growing.get(trigram);
+                if (list == null) {
+                    list = new int[4];
+                    growing.put(trigram, list);
+                }
+                final int length = list[0];
+                // entries are added in order, so a repeat is always last
+                if (length > 0 && list[length] == i) continue;
+                if (length + 1 == list.length) {
+                    list = Arrays.copyOf(list, list.length * 2);
+                    growing.put(trigram, list);
+                }
+                list[length + 1] = i;
+                list[0] = length + 1;
+            }
+        }
+        this.postings = new HashMap<>(growing.size() * 4 / 3 + 1);
+        growing.forEach((trigram, list) -> postings.put(trigram, Arrays.copyOfRange(list, 1, list[0] + 1)));
+        this.byText = sortIndexes(size, (a, b) -> texts[a].compareTo(texts[b]));
+    }
+
+    /**
+     * Sort the indexes of a sequence by comparing their elements.
+     * <p>
+     * A stable merge sort over int arrays, so no index is boxed.
+     *
+     * @param size number of elements
+     * @param comparator compares the elements at two indexes
+     * @return the indexes in sorted order
+     */
+    static int[] sortIndexes(int size, IntBinaryOperator comparator) {
+        int[] order = new int[size];
+        for (int i = 0; i < size; ++i) {
+            order[i] = i;
+        }
+        // short runs are insertion sorted first
+        for (int low = 0; low < size; low += 16) {
+            final int high = Math.min(low + 16, size);
+            for (int i = low + 1; i < high; ++i) {
+                final int index = order[i];
+                int j = i;
+                for (; j > low && comparator.applyAsInt(order[j - 1], index) > 0; --j) {
+                    order[j] = order[j - 1];
+                }
+                order[j] = index;
+            }
+        }
+        int[] merged = new int[size];
+        for (int width = 16; width < size; width <<= 1) {
+            for (int low = 0; low < size; low += width << 1) {
+                final int mid = Math.min(low + width, size);
+                final int high = Math.min(mid + width, size);
+                int i = low;
+                int j = mid;
+                int k = low;
+                while (i < mid && j < high) {
+                    merged[k++] = (comparator.applyAsInt(order[j], order[i]) < 0) ? order[j++] : order[i++];
+                }
+                System.arraycopy(order, i, merged, k, mid - i);
+                System.arraycopy(order, j, merged, k + mid - i, high - j);
+            }
+            final int[] swap = order;
+            order = merged;
+            merged = swap;
+        }
+        return order;
+    }
+
+    /**
+     * Get the number of indexed entries.
+     *
+     * @return number of entries
+     */
+    int size() {
+        return texts.length;
+    }
+
+    /**
+     * Find the entries matching a query.
+     *
+     * @param query search text
+     * @return a bitset of matching entry indexes
+     */
+    long[] match(String query) {
+        final String q = normalize(query);
+        final long[] matches = new long[(texts.length + 63) >>> 6];
+        if (q.isEmpty()) {
+            for (int i = 0; i < texts.length; ++i) {
+                matches[i >>> 6] |= 1L << i;
+            }
+            return matches;
+        }
+        if (q.length() < 3) {
+            // binary search for the first text with the prefix
+            int low = 0;
+            int high = byText.length;
+            while (low < high) {
+                final int mid = (low + high) >>> 1;
+                if (texts[byText[mid]].compareTo(q) < 0) low = mid + 1; else high = mid;
+            }
+            for (int j = low; j < byText.length && texts[byText[j]].startsWith(q); ++j) {
+                final int i = byText[j];
+                matches[i >>> 6] |= 1L << i;
+            }
+            return matches;
+        }
+        final int[][] lists = new int[q.length() - 2][];
+        for (int j = 0; j < lists.length; ++j) {
+            final int[] list = postings.get(trigram(q, j));
+            if (list == null) return matches;
+            lists[j] = list;
+        }
+        // walk the shortest posting list, probing the others
+        Arrays.sort(lists, Comparator.comparingInt(list -> list.length));
+        candidates:
+        for (int i : lists[0]) {
+            for (int j = 1; j < lists.length; ++j) {
+                if (Arrays.binarySearch(lists[j], i) < 0) continue candidates;
+            }
+            // trigrams may occur apart from each other
+            if (texts[i].contains(q)) matches[i >>> 6] |= 1L << i;
+        }
+        return matches;
+    }
+
+    private static Long trigram(String text, int start) {
+        return ((long) text.charAt(start) << 32) | ((long) text.charAt(start + 1) << 16) | text.charAt(start + 2);
+    }
+
+    /**
+     * Lowercase text and strip its color codes.
+     *
+     * @param text raw text or null
+     * @return normalized text
+     */
+    static String normalize(String text) {
+        if (text == null) return "";
+        final StringBuilder sb = new StringBuilder(text.length());
+        for (int i = 0; i < text.length(); ++i) {
+            final char c = text.charAt(i);
+            if (c == '\u00A7') {
+                // skip the code character too
+                ++i;
+                continue;
+            }
+            sb.append(c);
+        }
+        return sb.toString().toLowerCase(Locale.ROOT).trim();
+    }
+}
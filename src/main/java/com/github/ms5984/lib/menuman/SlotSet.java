@@ -0,0 +1,358 @@
+/*
+ *  Copyright 2021 ms5984 (Matt) <https://github.com/ms5984>
+ *
+ *  This file is part of MenuMan.
+ *
+ *  MenuMan is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU Lesser General Public License as
+ *  published by the Free Software Foundation, either version 3 of the
+ *  License, or (at your option) any later version.
+ *
+ *  MenuMan is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.github.ms5984.lib.menuman;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Collection;
+import java.util.function.IntConsumer;
+
+/**
+ * An immutable set of menu slots.
+ * <p>
+ * Backed by a single 64-bit mask, which covers every slot of the
+ * largest chest menu (54). Slots are zero-indexed: the first row
+ * is 0-8, not 1-9.
+ */
+public final class SlotSet {
+    /**
+     * The largest slot index (exclusive) a SlotSet can hold.
+     */
+    public static final int MAX_SLOTS = Long.SIZE;
+    private static final int ROW_LENGTH = 9;
+    private static final long ROW_MASK = (1L << ROW_LENGTH) - 1;
+    private static final SlotSet EMPTY = new SlotSet(0L);
+    private final long mask;
+
+    private SlotSet(long mask) {
+        this.mask = mask;
+    }
+
+    /**
+     * Get the empty SlotSet.
+     *
+     * @return a SlotSet without slots
+     */
+    public static SlotSet empty() {
+        return EMPTY;
+    }
+
+    /**
+     * Create a SlotSet from a raw bitmask.
+     * <p>
+     * Bit <code>n</code> of the mask represents slot <code>n</code>.
+     *
+     * @param mask a bitmask of slots
+     * @return a SlotSet of the mask
+     */
+    public static SlotSet fromMask(long mask) {
+        return mask == 0L ? EMPTY : new SlotSet(mask);
+    }
+
+    /**
+     * Create a SlotSet of specific slots.
+     *
+     * @param slots varargs of desired slots
+     * @return a SlotSet of the slots
+     * @throws IllegalArgumentException if any slot is outside 0-63
+     */
+    public static SlotSet of(int... slots) throws IllegalArgumentException {
+        long mask = 0L;
+        for (int slot : slots) {
+            mask |= bit(slot);
+        }
+        return fromMask(mask);
+    }
+
+    /**
+     * Create a SlotSet of a range of slots.
+     *
+     * @param fromInclusive first slot
+     * @param toExclusive slot after the last slot
+     * @return a SlotSet of the range
+     * @throws IllegalArgumentException if the range is outside 0-64
+     * or reversed
+     */
+    public static SlotSet range(int fromInclusive, int toExclusive) throws IllegalArgumentException {
+        if (fromInclusive < 0 || toExclusive > MAX_SLOTS || fromInclusive > toExclusive) {
+            throw new IllegalArgumentException("That is not a valid range!");
+        }
+        if (fromInclusive == toExclusive) return EMPTY;
+        final long upTo = (toExclusive == MAX_SLOTS) ? -1L : (1L << toExclusive) - 1;
+        return fromMask(upTo & (-1L << fromInclusive));
+    }
+
+    /**
+     * Create a SlotSet of every slot of a menu.
+     *
+     * @param rows number of rows of the menu
+     * @return a SlotSet of all slots
+     */
+    public static SlotSet all(@NotNull Menu.InventoryRows rows) {
+        return range(0, rows.slotCount);
+    }
+
+    /**
+     * Create a SlotSet of a single row.
+     *
+     * @param row zero-indexed row
+     * @return a SlotSet of the nine slots of the row
+     * @throws IllegalArgumentException if the row is outside 0-5
+     */
+    public static SlotSet row(int row) throws IllegalArgumentException {
+        if (row < 0 || row >= Menu.InventoryRows.SIX.ordinal() + 1) {
+            throw new IllegalArgumentException("That is not a valid row!");
+        }
+        return fromMask(ROW_MASK << (row * ROW_LENGTH));
+    }
+
+    /**
+     * Create a SlotSet of a single column.
+     *
+     * @param column zero-indexed column (0-8)
+     * @param rows number of rows of the menu
+     * @return a SlotSet of the column
+     * @throws IllegalArgumentException if the column is outside 0-8
+     */
+    public static SlotSet column(int column, @NotNull Menu.InventoryRows rows) throws IllegalArgumentException {
+        if (column < 0 || column >= ROW_LENGTH) {
+            throw new IllegalArgumentException("That is not a valid column!");
+        }
+        long mask = 0L;
+        for (int slot = column; slot < rows.slotCount; slot += ROW_LENGTH) {
+            mask |= 1L << slot;
+        }
+        return fromMask(mask);
+    }
+
+    /**
+     * Create a SlotSet of the outer edge of a menu.
+     *
+     * @param rows number of rows of the menu
+     * @return a SlotSet of the first and last rows and columns
+     */
+    public static SlotSet border(@NotNull Menu.InventoryRows rows) {
+        final int lastRow = rows.ordinal();
+        return row(0)
+                .union(row(lastRow))
+                .union(column(0, rows))
+                .union(column(ROW_LENGTH - 1, rows));
+    }
+
+    /**
+     * Collect the top-inventory slots of a set of raw slots.
+     * <p>
+     * Raw slots at or above the limit belong to the lower
+     * inventory and are ignored.
+     *
+     * @param rawSlots raw slot numbers of an event
+     * @param limit number of slots in the top inventory
+     * @return a SlotSet of the top-inventory slots
+     */
+    static SlotSet ofRawSlots(Collection<Integer> rawSlots, int limit) {
+        long mask = 0L;
+        for (int slot : rawSlots) {
+            if (slot >= 0 && slot < limit) mask |= 1L << slot;
+        }
+        return fromMask(mask);
+    }
+
+    private static long bit(int slot) {
+        if (slot < 0 || slot >= MAX_SLOTS) throw new IllegalArgumentException("That is not a valid slot!");
+        return 1L << slot;
+    }
+
+    /**
+     * Get the raw bitmask of this set.
+     *
+     * @return bitmask where bit <code>n</code> represents slot <code>n</code>
+     */
+    public long toMask() {
+        return mask;
+    }
+
+    /**
+     * Check if a slot is part of this set.
+     * <p>
+     * Any slot outside 0-63 is never contained.
+     *
+     * @param slot a slot
+     * @return true if the slot is in this set
+     */
+    public boolean contains(int slot) {
+        return slot >= 0 && slot < MAX_SLOTS && (mask & (1L << slot)) != 0L;
+    }
+
+    /**
+     * Check if this set shares any slot with another.
+     *
+     * @param other another SlotSet
+     * @return true if the sets intersect
+     */
+    public boolean intersects(@NotNull SlotSet other) {
+        return (mask & other.mask) != 0L;
+    }
+
+    /**
+     * Check if this set has no slots.
+     *
+     * @return true if empty
+     */
+    public boolean isEmpty() {
+        return mask == 0L;
+    }
+
+    /**
+     * Get the number of slots in this set.
+     *
+     * @return number of slots
+     */
+    public int size() {
+        return Long.bitCount(mask);
+    }
+
+    /**
+     * Get the lowest slot of this set.
+     *
+     * @return the lowest slot or -1 if empty
+     */
+    public int first() {
+        return mask == 0L ? -1 : Long.numberOfTrailingZeros(mask);
+    }
+
+    /**
+     * Get the highest slot of this set.
+     *
+     * @return the highest slot or -1 if empty
+     */
+    public int last() {
+        return MAX_SLOTS - 1 - Long.numberOfLeadingZeros(mask);
+    }
+
+    /**
+     * Create a set containing the slots of both sets.
+     *
+     * @param other another SlotSet
+     * @return the union of the sets
+     */
+    public SlotSet union(@NotNull SlotSet other) {
+        return fromMask(mask | other.mask);
+    }
+
+    /**
+     * Create a set containing only slots found in both sets.
+     *
+     * @param other another SlotSet
+     * @return the intersection of the sets
+     */
+    public SlotSet intersection(@NotNull SlotSet other) {
+        return fromMask(mask & other.mask);
+    }
+
+    /**
+     * Create a set of the slots of this set which are not in another.
+     *
+     * @param other another SlotSet
+     * @return the difference of the sets
+     */
+    public SlotSet difference(@NotNull SlotSet other) {
+        return fromMask(mask & ~other.mask);
+    }
+
+    /**
+     * Create a set of the menu slots which are not in this set.
+     *
+     * @param rows number of rows of the menu
+     * @return the complement of this set within the menu
+     */
+    public SlotSet complement(@NotNull Menu.InventoryRows rows) {
+        return all(rows).difference(this);
+    }
+
+    /**
+     * Create a set with an additional slot.
+     *
+     * @param slot a slot to add
+     * @return a SlotSet including the slot
+     * @throws IllegalArgumentException if the slot is outside 0-63
+     */
+    public SlotSet with(int slot) throws IllegalArgumentException {
+        return fromMask(mask | bit(slot));
+    }
+
+    /**
+     * Create a set without a slot.
+     *
+     * @param slot a slot to remove
+     * @return a SlotSet excluding the slot
+     */
+    public SlotSet without(int slot) {
+        return contains(slot) ? fromMask(mask & ~(1L << slot)) : this;
+    }
+
+    /**
+     * Run an action for each slot of this set, in ascending order.
+     *
+     * @param action an action accepting slot indexes
+     */
+    public void forEach(@NotNull IntConsumer action) {
+        long remaining = mask;
+        while (remaining != 0L) {
+            action.accept(Long.numberOfTrailingZeros(remaining));
+            remaining &= remaining - 1;
+        }
+    }
+
+    /**
+     * Get the slots of this set as an array, in ascending order.
+     *
+     * @return a new array of slots
+     */
+    public int[] toArray() {
+        final int[] slots = new int[size()];
+        long remaining = mask;
+        for (int i = 0; remaining != 0L; ++i) {
+            slots[i] = Long.numberOfTrailingZeros(remaining);
+            remaining &= remaining - 1;
+        }
+        return slots;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof SlotSet)) return false;
+        return mask == ((SlotSet) o).mask;
+    }
+
+    @Override
+    public int hashCode() {
+        return Long.hashCode(mask);
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder sb = new StringBuilder("SlotSet[");
+        forEach(slot -> {
+            if (sb.length() > 8) sb.append(", ");
+            sb.append(slot);
+        });
+        return sb.append(']').toString();
+    }
+}
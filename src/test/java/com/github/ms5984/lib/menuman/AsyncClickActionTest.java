@@ -0,0 +1,109 @@
+package com.github.ms5984.lib.menuman;
+
+import org.bukkit.Bukkit;
+import org.bukkit.Server;
+import org.bukkit.inventory.Inventory;
+import org.bukkit.inventory.InventoryView;
+import org.bukkit.plugin.PluginManager;
+import org.bukkit.plugin.java.JavaPlugin;
+import org.bukkit.scheduler.BukkitScheduler;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.lang.reflect.Field;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.logging.Logger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class AsyncClickActionTest {
+
+    Menu setupClick(JavaPlugin plugin, MenuClick menuClick, InventoryView view, Inventory inventory) {
+        // the scheduler is shared between tests
+        clearInvocations(Bukkit.getScheduler());
+        final Menu menu = new MenuBuilder(Menu.InventoryRows.ONE, "Async").create(plugin);
+        doReturn(true).when(plugin).isEnabled();
+        doReturn(menuClick).when(menuClick).retain();
+        doReturn(view).when(menuClick).getInventoryView();
+        doReturn(inventory).when(view).getTopInventory();
+        doReturn(new MenuHolder(menu)).when(inventory).getHolder();
+        return menu;
+    }
+
+    @Test
+    void testContinuation(@Mock JavaPlugin plugin,
+                          @Mock MenuClick menuClick,
+                          @Mock InventoryView view,
+                          @Mock Inventory inventory,
+                          @Mock ClickAction continuation) {
+        final Menu menu = setupClick(plugin, menuClick, view, inventory);
+        final CompletableFuture<ClickAction> future = new CompletableFuture<>();
+        final AsyncClickAction action = AsyncClickAction.of(AsyncClickAction.Lock.MENU, click -> future);
+        assertSame(AsyncClickAction.Lock.MENU, action.getLock());
+        action.onClick(menuClick);
+        // click is cancelled and the menu is locked until completion
+        verify(menuClick).disallowClick();
+        assertTrue(menu.isLocked(0));
+        verify(Bukkit.getScheduler(), never()).runTask(any(), any(Runnable.class));
+        // continuation runs in a main thread task
+        future.complete(continuation);
+        final ArgumentCaptor<Runnable> captor = ArgumentCaptor.forClass(Runnable.class);
+        verify(Bukkit.getScheduler()).runTask(eq(plugin), captor.capture());
+        verify(continuation, never()).onClick(any());
+        captor.getValue().run();
+        verify(continuation).onClick(menuClick);
+        assertFalse(menu.isLocked(0));
+    }
+
+    @Test
+    void testFailure(@Mock JavaPlugin plugin,
+                     @Mock MenuClick menuClick,
+                     @Mock InventoryView view,
+                     @Mock Inventory inventory) {
+        final Menu menu = setupClick(plugin, menuClick, view, inventory);
+        doReturn(Logger.getLogger("Test")).when(plugin).getLogger();
+        doReturn(Optional.empty()).when(menuClick).getSlotClicked();
+        final AsyncClickAction action = AsyncClickAction.of(AsyncClickAction.Lock.SLOT, click -> {
+            throw new IllegalStateException("Database unavailable");
+        });
+        action.onClick(menuClick);
+        // failure is logged on the main thread and nothing stays locked
+        final ArgumentCaptor<Runnable> captor = ArgumentCaptor.forClass(Runnable.class);
+        verify(Bukkit.getScheduler()).runTask(eq(plugin), captor.capture());
+        captor.getValue().run();
+        assertFalse(menu.isLocked(0));
+    }
+
+    @BeforeAll
+    public static void setupFakeServer(@Mock Server server,
+                                       @Mock PluginManager pluginManager,
+                                       @Mock BukkitScheduler scheduler) {
+        // fake name, version, bukkitVersion
+        doReturn("FakeServerTest").when(server).getName();
+        doReturn("1.0").when(server).getVersion();
+        doReturn("fakeBukkitVersion").when(server).getBukkitVersion();
+        // fake plugin manager
+        doReturn(pluginManager).when(server).getPluginManager();
+        // fake scheduler
+        doReturn(scheduler).when(server).getScheduler();
+        // add logger
+        doReturn(Logger.getLogger("Test")).when(server).getLogger();
+        // setup fake server
+        try {
+            final Field serverField = Bukkit.class.getDeclaredField("server");
+            serverField.setAccessible(true);
+            serverField.set(null, server);
+        } catch (NoSuchFieldException | IllegalAccessException e) {
+//            e.printStackTrace();
+        }
+        // run async work on the calling thread
+        AsyncClickAction.setExecutor(Runnable::run);
+    }
+}
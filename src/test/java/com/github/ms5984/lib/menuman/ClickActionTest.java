@@ -1,12 +1,21 @@
 package com.github.ms5984.lib.menuman;
 
+import org.bukkit.Bukkit;
+import org.bukkit.Server;
+import org.bukkit.command.PluginCommand;
+import org.bukkit.entity.Player;
+import org.bukkit.plugin.java.JavaPlugin;
 import org.jetbrains.annotations.NotNull;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.Mock;
 import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
 
+import java.lang.reflect.Field;
+import java.util.logging.Logger;
+
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.*;
@@ -16,6 +25,7 @@ class ClickActionTest {
 
     @Mock
     MenuClick menuClick;
+    Server server;
     final String testCommand = "gamemode creative";
     @Spy
     ClickAction.RunCommand runCommand = new ClickAction.RunCommand() {
@@ -63,4 +73,103 @@ class ClickActionTest {
     void testRunCommandCloseOnClickFalse() {
         assertFalse(runCommandFalse.closeOnClick());
     }
+
+    ClickAction.RunCommand direct(String commandLine) {
+        return new ClickAction.RunCommand() {
+            @Override
+            public @NotNull String commandToRun() {
+                return commandLine;
+            }
+
+            @Override
+            public boolean closeOnClick() {
+                return false;
+            }
+
+            @Override
+            public DispatchMode dispatchMode() {
+                return DispatchMode.DIRECT;
+            }
+        };
+    }
+
+    @Test
+    void testRunCommandDirect(@Mock Player player,
+                              @Mock PluginCommand command,
+                              @Mock PluginCommand reloaded,
+                              @Mock JavaPlugin plugin) {
+        final ClickAction.RunCommand direct = direct("/give {player} diamond");
+        doReturn("Steve").when(player).getName();
+        doReturn(command, reloaded).when(server).getPluginCommand("give");
+        doReturn(true).when(command).isRegistered();
+        doReturn(plugin).when(command).getPlugin();
+        doReturn(true, false).when(plugin).isEnabled();
+        final MenuClick click = new MenuClick(null, player);
+        direct.onClick(click);
+        direct.onClick(click);
+        // resolved once, executed directly with filled arguments
+        verify(server, times(1)).getPluginCommand("give");
+        verify(command, times(2)).execute(player, "give", new String[]{"Steve", "diamond"});
+        verify(server, never()).dispatchCommand(any(), any());
+        // the owning plugin was disabled: resolved again
+        direct.onClick(click);
+        verify(server, times(2)).getPluginCommand("give");
+        verify(reloaded).execute(player, "give", new String[]{"Steve", "diamond"});
+        verify(command, times(2)).execute(any(), any(), any());
+    }
+
+    @Test
+    void testRunCommandDirectMissing(@Mock Player player) {
+        final ClickAction.RunCommand direct = direct("/nothere");
+        final MenuClick click = new MenuClick(null, player);
+        direct.onClick(click);
+        direct.onClick(click);
+        // the failed lookup is not repeated on every click
+        verify(server, times(1)).getPluginCommand("nothere");
+        verify(server, times(2)).dispatchCommand(player, "/nothere");
+    }
+
+    @Test
+    void testRunCommandDirectFails(@Mock Player player, @Mock PluginCommand command) {
+        final ClickAction.RunCommand direct = direct("/boom");
+        doReturn(command).when(server).getPluginCommand("boom");
+        doThrow(new IllegalStateException("Boom")).when(command).execute(any(), any(), any());
+        doReturn(Logger.getLogger("Test")).when(server).getLogger();
+        // logged, not thrown into the click handler
+        assertDoesNotThrow(() -> direct.onClick(new MenuClick(null, player)));
+        verify(command).execute(player, "boom", new String[0]);
+    }
+
+    @Test
+    void testRunCommandDispatchAsIs(@Mock Player player) {
+        final ClickAction.RunCommand dispatch = new ClickAction.RunCommand() {
+            @Override
+            public @NotNull String commandToRun() {
+                return "msg {player} hi";
+            }
+
+            @Override
+            public boolean closeOnClick() {
+                return false;
+            }
+        };
+        assertSame(ClickAction.RunCommand.DispatchMode.DISPATCH, dispatch.dispatchMode());
+        dispatch.onClick(new MenuClick(null, player));
+        // placeholders are only filled in DIRECT mode
+        verify(server).dispatchCommand(player, "msg {player} hi");
+        verify(player, never()).getName();
+    }
+
+    @BeforeEach
+    void setupFakeServer() {
+        server = mock(Server.class);
+        // setup fake server
+        try {
+            final Field serverField = Bukkit.class.getDeclaredField("server");
+            serverField.setAccessible(true);
+            serverField.set(null, server);
+        } catch (NoSuchFieldException | IllegalAccessException e) {
+//            e.printStackTrace();
+        }
+    }
 }
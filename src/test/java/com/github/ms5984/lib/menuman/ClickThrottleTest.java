@@ -0,0 +1,66 @@
+package com.github.ms5984.lib.menuman;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ClickThrottleTest {
+    final long ms = TimeUnit.MILLISECONDS.toNanos(1);
+
+    @Test
+    void testInvalid() {
+        assertThrows(IllegalArgumentException.class, () -> ClickThrottle.minInterval(0, TimeUnit.MILLISECONDS));
+        assertThrows(IllegalArgumentException.class, () -> ClickThrottle.of(1, TimeUnit.SECONDS, 0));
+    }
+
+    @Test
+    void testMinInterval() {
+        final ClickThrottle throttle = ClickThrottle.minInterval(100, TimeUnit.MILLISECONDS);
+        assertTrue(throttle.tryAcquire(1, 4, 0));
+        // too soon
+        assertFalse(throttle.tryAcquire(1, 4, 50 * ms));
+        // rejected clicks do not push the limit back
+        assertTrue(throttle.tryAcquire(1, 4, 100 * ms));
+        // other players and slots are separate
+        assertTrue(throttle.tryAcquire(2, 4, 100 * ms));
+        assertTrue(throttle.tryAcquire(1, 5, 100 * ms));
+        assertTrue(throttle.tryAcquire(1, -1, 100 * ms));
+    }
+
+    @Test
+    void testPeek() {
+        final ClickThrottle throttle = ClickThrottle.minInterval(100, TimeUnit.MILLISECONDS);
+        // peeking records nothing
+        assertTrue(throttle.peek(1, 4, 0));
+        assertTrue(throttle.peek(1, 4, 0));
+        assertEquals(0, throttle.trackedCount());
+        assertTrue(throttle.tryAcquire(1, 4, 0));
+        assertFalse(throttle.peek(1, 4, 50 * ms));
+        assertTrue(throttle.peek(1, 4, 100 * ms));
+    }
+
+    @Test
+    void testBurst() {
+        final ClickThrottle throttle = ClickThrottle.of(100, TimeUnit.MILLISECONDS, 3);
+        // burst of three, then one per interval
+        assertTrue(throttle.tryAcquire(1, -1, 0));
+        assertTrue(throttle.tryAcquire(1, -1, 0));
+        assertTrue(throttle.tryAcquire(1, -1, 0));
+        assertFalse(throttle.tryAcquire(1, -1, 0));
+        assertTrue(throttle.tryAcquire(1, -1, 100 * ms));
+        assertFalse(throttle.tryAcquire(1, -1, 150 * ms));
+    }
+
+    @Test
+    void testRecoveredEntriesDropped() {
+        final ClickThrottle throttle = ClickThrottle.minInterval(1, TimeUnit.MILLISECONDS);
+        for (int id = 0; id < 1000; ++id) {
+            assertTrue(throttle.tryAcquire(id, -1, id * 10 * ms));
+        }
+        // only players still within their interval are kept
+        assertTrue(throttle.trackedCount() < 100);
+        assertFalse(throttle.tryAcquire(999, -1, 999 * 10 * ms));
+    }
+}
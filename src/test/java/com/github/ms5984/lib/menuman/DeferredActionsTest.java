@@ -0,0 +1,121 @@
+package com.github.ms5984.lib.menuman;
+
+import org.bukkit.Bukkit;
+import org.bukkit.Server;
+import org.bukkit.entity.Player;
+import org.bukkit.plugin.java.JavaPlugin;
+import org.bukkit.scheduler.BukkitScheduler;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.lang.reflect.Field;
+import java.util.UUID;
+import java.util.logging.Logger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class DeferredActionsTest {
+    final DeferredActions deferred = DeferredActions.get();
+
+    @BeforeEach
+    void resetScheduler() {
+        // the scheduler is shared between tests
+        clearInvocations(Bukkit.getScheduler());
+    }
+
+    @Test
+    void testCoalesce(@Mock JavaPlugin plugin,
+                      @Mock Player player1,
+                      @Mock Player player2,
+                      @Mock Runnable close1,
+                      @Mock Runnable open1,
+                      @Mock Runnable close2) {
+        doReturn(UUID.randomUUID()).when(player1).getUniqueId();
+        doReturn(UUID.randomUUID()).when(player2).getUniqueId();
+        deferred.defer(plugin, player1, close1);
+        deferred.defer(plugin, player2, close2);
+        // the newest request per player wins
+        deferred.defer(plugin, player1, open1);
+        assertEquals(2, deferred.getPending());
+        // one task for the whole tick
+        verify(Bukkit.getScheduler(), times(1)).runTask(plugin, deferred);
+        deferred.run();
+        verify(close1, never()).run();
+        verify(open1).run();
+        verify(close2).run();
+        assertEquals(0, deferred.getPending());
+        // the next request schedules a new task
+        deferred.defer(plugin, player1, close1);
+        verify(Bukkit.getScheduler(), times(2)).runTask(plugin, deferred);
+        deferred.run();
+    }
+
+    @Test
+    void testPluginDisable(@Mock JavaPlugin plugin, @Mock Player player, @Mock Runnable action) {
+        doReturn(UUID.randomUUID()).when(player).getUniqueId();
+        deferred.defer(plugin, player, action);
+        // the owning plugin's task is gone; pending actions are dropped
+        deferred.onDisable(plugin);
+        assertEquals(0, deferred.getPending());
+        deferred.defer(plugin, player, action);
+        verify(Bukkit.getScheduler(), times(2)).runTask(plugin, deferred);
+        deferred.run();
+        verify(action).run();
+    }
+
+    @Test
+    void testPluginDisableKeepsOthers(@Mock JavaPlugin plugin, @Mock JavaPlugin other,
+                                      @Mock Player player1, @Mock Player player2,
+                                      @Mock Runnable dropped, @Mock Runnable kept) {
+        doReturn(UUID.randomUUID()).when(player1).getUniqueId();
+        doReturn(UUID.randomUUID()).when(player2).getUniqueId();
+        deferred.defer(plugin, player1, dropped);
+        deferred.defer(other, player2, kept);
+        // the task moves to the plugin of the remaining action
+        deferred.onDisable(plugin);
+        assertEquals(1, deferred.getPending());
+        verify(Bukkit.getScheduler()).runTask(other, deferred);
+        deferred.run();
+        verify(dropped, never()).run();
+        verify(kept).run();
+    }
+
+    @Test
+    void testOpenMenu(@Mock JavaPlugin plugin,
+                      @Mock MenuRegistry registry,
+                      @Mock Menu menu,
+                      @Mock Player player) {
+        doReturn(UUID.randomUUID()).when(player).getUniqueId();
+        doReturn(plugin).when(registry).getPlugin();
+        doReturn(registry).when(menu).getRegistry();
+        final ClickAction action = ClickAction.openMenu(menu);
+        final MenuClick click = new MenuClick(null, player);
+        action.onClick(click);
+        // opened on the next tick
+        verify(menu, never()).open(player);
+        deferred.run();
+        verify(menu).open(player);
+    }
+
+    @BeforeAll
+    public static void setupFakeServer(@Mock Server server, @Mock BukkitScheduler scheduler) {
+        // fake scheduler
+        doReturn(scheduler).when(server).getScheduler();
+        // add logger
+        doReturn(Logger.getLogger("Test")).when(server).getLogger();
+        // setup fake server
+        try {
+            final Field serverField = Bukkit.class.getDeclaredField("server");
+            serverField.setAccessible(true);
+            serverField.set(null, server);
+        } catch (NoSuchFieldException | IllegalAccessException e) {
+//            e.printStackTrace();
+        }
+    }
+}
@@ -1,5 +1,6 @@
 package com.github.ms5984.lib.menuman;
 
+import org.bukkit.event.inventory.ClickType;
 import org.bukkit.inventory.ItemStack;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -27,6 +28,41 @@ class ElementBuilderTest {
         assertSame(clickAction, menuBuilder.actions.get(0));
     }
 
+    @Test
+    void testSetTypedAction() {
+        final ClickAction left = click -> {};
+        final ClickAction drop = click -> {};
+        final MenuBuilder menuBuilder = getSimpleBuilder()
+                .onLeftClick(left)
+                .onDrop(drop)
+                .assignToSlots(0, 1);
+        final ClickAction[] byType = menuBuilder.typedActions.get(0);
+        assertSame(left, byType[ClickType.LEFT.ordinal()]);
+        assertSame(drop, byType[ClickType.DROP.ordinal()]);
+        assertSame(drop, byType[ClickType.CONTROL_DROP.ordinal()]);
+        assertNull(byType[ClickType.RIGHT.ordinal()]);
+        // slots of the element share one table
+        assertSame(byType, menuBuilder.typedActions.get(1));
+        // elements without typed actions have no table
+        assertNull(menuBuilder.addElement(fakeItem).assignToSlots(2).typedActions.get(2));
+    }
+
+    @Test
+    void testSetAnimation(@Mock ItemStack frame2) {
+        assertThrows(IllegalArgumentException.class, () -> getSimpleBuilder().setAnimation(0, fakeItem));
+        assertThrows(IllegalArgumentException.class, () -> getSimpleBuilder().setAnimation(1));
+        final MenuBuilder menuBuilder = getSimpleBuilder()
+                .setAnimation(5, fakeItem, frame2)
+                .assignToSlots(0, 1);
+        final AnimatedElement animation = menuBuilder.animations.get(0);
+        assertEquals(5, animation.getPeriod());
+        assertEquals(2, animation.getFrameCount());
+        // the first frame is the base item; slots share the animation
+        assertSame(fakeItem, menuBuilder.items.get(0).baseItem);
+        assertSame(animation, menuBuilder.animations.get(1));
+        assertNull(menuBuilder.addElement(fakeItem).assignToSlots(2).animations.get(2));
+    }
+
     @Test
     void testSetItem(@Mock ItemStack newItem) {
         final MenuBuilder menuBuilder = getSimpleBuilder().setItem(newItem).assignToSlots(0);
@@ -88,6 +124,17 @@ class ElementBuilderTest {
         assertThrows(IllegalArgumentException.class, () -> simpleBuilder1.assignToSlots(rows.slotCount));
     }
 
+    @Test
+    void testAssignToSlotSet() {
+        // test row
+        final MenuBuilder menuBuilder = getSimpleBuilder().assignTo(SlotSet.row(1));
+        assertEquals(SlotSet.row(1), menuBuilder.getAssignedSlots());
+        assertEquals(fakeItem, menuBuilder.items.get(9).baseItem);
+        // test out of range
+        final ElementBuilder simpleBuilder = getSimpleBuilder();
+        assertThrows(IllegalArgumentException.class, () -> simpleBuilder.assignTo(SlotSet.row(3)));
+    }
+
     ElementBuilder getSimpleBuilder() {
         return new MenuBuilder(rows, "Test title").addElement(fakeItem);
     }
@@ -0,0 +1,132 @@
+package com.github.ms5984.lib.menuman;
+
+import org.bukkit.Bukkit;
+import org.bukkit.Server;
+import org.bukkit.entity.Player;
+import org.bukkit.inventory.Inventory;
+import org.bukkit.plugin.PluginManager;
+import org.bukkit.plugin.java.JavaPlugin;
+import org.bukkit.scheduler.BukkitScheduler;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.lang.reflect.Field;
+import java.util.logging.Logger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class InventoryPoolTest {
+
+    Menu createMenu(JavaPlugin plugin, String title) {
+        return new MenuBuilder(Menu.InventoryRows.ONE, title).setPooledInventories(true).create(plugin);
+    }
+
+    Inventory openAndRelease(Menu menu, Player player) {
+        menu.open(player);
+        final Inventory inventory = menu.getCurrentInventory().orElseThrow(AssertionError::new);
+        menu.release();
+        return inventory;
+    }
+
+    @Test
+    void testBorrowAndReturn(@Mock JavaPlugin plugin, @Mock Player player) {
+        final InventoryPool pool = MenuRegistry.of(plugin).getInventoryPool();
+        final Menu menu1 = createMenu(plugin, "Pooled");
+        final Menu menu2 = createMenu(plugin, "Pooled");
+        // first open creates the inventory
+        final Inventory inventory = openAndRelease(menu1, player);
+        assertEquals(0, pool.getHits());
+        assertEquals(1, pool.getMisses());
+        // released inventory is cleared, unbound and pooled
+        verify(inventory).clear();
+        assertFalse(menu1.getCurrentInventory().isPresent());
+        assertEquals(1, pool.getPooledCount());
+        // another menu of the same key reuses it
+        menu2.open(player);
+        assertSame(inventory, menu2.getCurrentInventory().orElse(null));
+        assertEquals(1, pool.getHits());
+        assertEquals(0, pool.getPooledCount());
+    }
+
+    @Test
+    void testKeyAndBound(@Mock JavaPlugin plugin, @Mock Player player) {
+        final InventoryPool pool = MenuRegistry.of(plugin).getInventoryPool();
+        pool.setMaxPerKey(1);
+        assertThrows(IllegalArgumentException.class, () -> pool.setMaxPerKey(-1));
+        openAndRelease(createMenu(plugin, "A"), player);
+        // a full key drops further inventories
+        openAndRelease(createMenu(plugin, "A"), player);
+        assertEquals(1, pool.getPooledCount());
+        // a different title misses
+        final long misses = pool.getMisses();
+        openAndRelease(createMenu(plugin, "B"), player);
+        assertEquals(misses + 1, pool.getMisses());
+        assertEquals(2, pool.getPooledCount());
+        pool.clear();
+        assertEquals(0, pool.getPooledCount());
+    }
+
+    @Test
+    void testTotalBound(@Mock JavaPlugin plugin, @Mock Player player) {
+        final InventoryPool pool = MenuRegistry.of(plugin).getInventoryPool();
+        assertThrows(IllegalArgumentException.class, () -> pool.setMaxTotal(-1));
+        pool.setMaxTotal(2);
+        openAndRelease(createMenu(plugin, "A"), player);
+        openAndRelease(createMenu(plugin, "B"), player);
+        openAndRelease(createMenu(plugin, "C"), player);
+        // the least recently used key made room
+        assertEquals(2, pool.getPooledCount());
+        assertEquals(2, pool.getKeyCount());
+        final long hits = pool.getHits();
+        createMenu(plugin, "A").open(player);
+        assertEquals(hits, pool.getHits());
+        createMenu(plugin, "C").open(player);
+        assertEquals(hits + 1, pool.getHits());
+        // emptied keys are forgotten
+        assertEquals(1, pool.getKeyCount());
+        // lowering the bound trims at once
+        pool.setMaxTotal(0);
+        assertEquals(0, pool.getPooledCount());
+        assertEquals(0, pool.getKeyCount());
+    }
+
+    @Test
+    void testDroppedCreatesNoKey(@Mock JavaPlugin plugin, @Mock Player player) {
+        final InventoryPool pool = MenuRegistry.of(plugin).getInventoryPool();
+        pool.setMaxPerKey(0);
+        openAndRelease(createMenu(plugin, "Dropped"), player);
+        assertEquals(0, pool.getPooledCount());
+        assertEquals(0, pool.getKeyCount());
+    }
+
+    @BeforeAll
+    public static void setupFakeServer(@Mock Server server,
+                                       @Mock PluginManager pluginManager,
+                                       @Mock BukkitScheduler scheduler) {
+        // fake name, version, bukkitVersion
+        doReturn("FakeServerTest").when(server).getName();
+        doReturn("1.0").when(server).getVersion();
+        doReturn("fakeBukkitVersion").when(server).getBukkitVersion();
+        // fake plugin manager
+        doReturn(pluginManager).when(server).getPluginManager();
+        // fake scheduler
+        doReturn(scheduler).when(server).getScheduler();
+        // add logger
+        doReturn(Logger.getLogger("Test")).when(server).getLogger();
+        // setup fake server
+        try {
+            final Field serverField = Bukkit.class.getDeclaredField("server");
+            serverField.setAccessible(true);
+            serverField.set(null, server);
+        } catch (NoSuchFieldException | IllegalAccessException e) {
+//            e.printStackTrace();
+        }
+        // fake createInventory (a new inventory each call)
+        doAnswer(invocationOnMock -> mock(Inventory.class)).when(server).createInventory(any(MenuHolder.class), anyInt(), anyString());
+    }
+}
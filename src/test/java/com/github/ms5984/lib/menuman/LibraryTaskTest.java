@@ -0,0 +1,94 @@
+package com.github.ms5984.lib.menuman;
+
+import org.bukkit.Bukkit;
+import org.bukkit.Server;
+import org.bukkit.plugin.java.JavaPlugin;
+import org.bukkit.scheduler.BukkitScheduler;
+import org.bukkit.scheduler.BukkitTask;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.lang.reflect.Field;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class LibraryTaskTest {
+
+    @BeforeEach
+    void resetScheduler() {
+        // the scheduler is shared between tests
+        clearInvocations(Bukkit.getScheduler());
+    }
+
+    @Test
+    void testRepeating(@Mock JavaPlugin plugin, @Mock JavaPlugin other,
+                       @Mock Runnable runnable, @Mock BukkitTask bukkitTask) {
+        final BukkitScheduler scheduler = Bukkit.getScheduler();
+        doReturn(bukkitTask).when(scheduler).runTaskTimer(plugin, runnable, 1L, 1L);
+        final LibraryTask task = new LibraryTask(runnable, true);
+        assertFalse(task.isScheduled());
+        task.start(plugin);
+        // started once, under the first plugin
+        task.start(other);
+        assertSame(plugin, task.getOwner());
+        verify(Bukkit.getScheduler(), times(1)).runTaskTimer(any(JavaPlugin.class), eq(runnable), eq(1L), eq(1L));
+        task.cancel();
+        verify(bukkitTask).cancel();
+        assertFalse(task.isScheduled());
+        assertNull(task.getOwner());
+    }
+
+    @Test
+    void testOneShot(@Mock JavaPlugin plugin, @Mock Runnable runnable) {
+        final LibraryTask task = new LibraryTask(runnable, false);
+        task.start(plugin);
+        task.start(plugin);
+        verify(Bukkit.getScheduler(), times(1)).runTask(plugin, runnable);
+        // once run, the next start schedules again
+        task.ran();
+        assertFalse(task.isScheduled());
+        task.start(plugin);
+        verify(Bukkit.getScheduler(), times(2)).runTask(plugin, runnable);
+    }
+
+    @Test
+    void testHandOff(@Mock JavaPlugin plugin, @Mock JavaPlugin other,
+                     @Mock Runnable runnable, @Mock BukkitTask bukkitTask) {
+        final BukkitScheduler scheduler = Bukkit.getScheduler();
+        doReturn(bukkitTask).when(scheduler).runTaskTimer(plugin, runnable, 1L, 1L);
+        final LibraryTask task = new LibraryTask(runnable, true);
+        // nothing to hand off before the task is started
+        assertFalse(task.handOff(plugin, other));
+        task.start(plugin);
+        // other plugins disabling leave the task alone
+        assertFalse(task.handOff(other, null));
+        assertSame(plugin, task.getOwner());
+        assertTrue(task.handOff(plugin, other));
+        verify(bukkitTask).cancel();
+        assertSame(other, task.getOwner());
+        verify(Bukkit.getScheduler()).runTaskTimer(other, runnable, 1L, 1L);
+        // without a successor the task stops
+        assertTrue(task.handOff(other, null));
+        assertFalse(task.isScheduled());
+    }
+
+    @BeforeAll
+    public static void setupFakeServer(@Mock Server server, @Mock BukkitScheduler scheduler) {
+        // fake scheduler
+        doReturn(scheduler).when(server).getScheduler();
+        // setup fake server
+        try {
+            final Field serverField = Bukkit.class.getDeclaredField("server");
+            serverField.setAccessible(true);
+            serverField.set(null, server);
+        } catch (NoSuchFieldException | IllegalAccessException e) {
+//            e.printStackTrace();
+        }
+    }
+}
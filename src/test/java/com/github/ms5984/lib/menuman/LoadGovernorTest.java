@@ -0,0 +1,126 @@
+package com.github.ms5984.lib.menuman;
+
+import org.bukkit.Bukkit;
+import org.bukkit.Server;
+import org.bukkit.plugin.java.JavaPlugin;
+import org.bukkit.scheduler.BukkitScheduler;
+import org.bukkit.scheduler.BukkitTask;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.lang.reflect.Field;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class LoadGovernorTest {
+    final LoadGovernor governor = LoadGovernor.get();
+    long now;
+
+    private void ticks(int count, double millis) {
+        for (int i = 0; i < count; ++i) {
+            now += (long) (millis * 1_000_000L);
+            governor.sample(now);
+        }
+    }
+
+    @BeforeEach
+    @AfterEach
+    void recover() {
+        // start after a pause, then settle at full speed; the governor is shared between tests
+        now = Math.max(now, System.nanoTime()) + 2_000_000_000L;
+        governor.sample(now);
+        ticks(300, 50.0);
+    }
+
+    @Test
+    void testFullSpeed() {
+        assertEquals(1.0, governor.getLoad(), 0.01);
+        for (LoadGovernor.Priority priority : LoadGovernor.Priority.values()) {
+            assertEquals(1, governor.getBackoff(priority));
+            assertTrue(governor.allows(priority));
+        }
+    }
+
+    @Test
+    void testBackoffByPriority() {
+        ticks(60, 100.0);
+        assertTrue(governor.getAverageTickMillis() > 90.0);
+        final int low = governor.getBackoff(LoadGovernor.Priority.LOW);
+        final int normal = governor.getBackoff(LoadGovernor.Priority.NORMAL);
+        assertTrue(low > normal, low + " > " + normal);
+        assertTrue(normal > 1);
+        assertTrue(low <= LoadGovernor.MAX_BACKOFF);
+        assertEquals(1, governor.getBackoff(LoadGovernor.Priority.HIGH));
+        // low priority updates are only allowed every few ticks
+        int allowedLow = 0;
+        for (int i = 0; i < 40; ++i) {
+            ticks(1, 100.0);
+            if (governor.allows(LoadGovernor.Priority.LOW)) ++allowedLow;
+            assertTrue(governor.allows(LoadGovernor.Priority.HIGH));
+        }
+        assertTrue(allowedLow <= 40 / low + 1);
+    }
+
+    @Test
+    void testGradualRecovery() {
+        ticks(60, 100.0);
+        final int lagging = governor.getBackoff(LoadGovernor.Priority.LOW);
+        ticks(1, 50.0);
+        assertTrue(governor.getBackoff(LoadGovernor.Priority.LOW) >= lagging - 1);
+        ticks(300, 50.0);
+        assertEquals(1, governor.getBackoff(LoadGovernor.Priority.LOW));
+    }
+
+    @Test
+    void testPausesIgnored() {
+        final double before = governor.getAverageTickMillis();
+        ticks(1, 5_000.0);
+        assertEquals(before, governor.getAverageTickMillis());
+    }
+
+    @Test
+    void testPluginDisable(@Mock JavaPlugin plugin, @Mock JavaPlugin other,
+                           @Mock BukkitTask task, @Mock MenuRegistry registry, @Mock Menu menu) {
+        final BukkitScheduler scheduler = Bukkit.getScheduler();
+        doReturn(task).when(scheduler).runTaskTimer(eq(plugin), any(Runnable.class), eq(1L), eq(1L));
+        doReturn(other).when(registry).getPlugin();
+        doReturn(registry).when(menu).getRegistry();
+        // let the task started by other tests idle out
+        for (int i = 0; i < 200; ++i) {
+            governor.tick();
+        }
+        governor.watch(plugin);
+        // another plugin is still updating menus
+        MenuUpdater.get().queue(menu);
+        governor.onDisable(plugin);
+        verify(task).cancel();
+        verify(scheduler).runTaskTimer(eq(other), any(Runnable.class), eq(1L), eq(1L));
+        // nobody left to time ticks for
+        MenuUpdater.get().onDisable(other);
+        governor.onDisable(other);
+        governor.watch(plugin);
+        verify(scheduler, times(2)).runTaskTimer(eq(plugin), any(Runnable.class), eq(1L), eq(1L));
+        governor.onDisable(plugin);
+    }
+
+    @BeforeAll
+    public static void setupFakeServer(@Mock Server server, @Mock BukkitScheduler scheduler) {
+        // fake scheduler
+        doReturn(scheduler).when(server).getScheduler();
+        // setup fake server
+        try {
+            final Field serverField = Bukkit.class.getDeclaredField("server");
+            serverField.setAccessible(true);
+            serverField.set(null, server);
+        } catch (NoSuchFieldException | IllegalAccessException e) {
+//            e.printStackTrace();
+        }
+    }
+}
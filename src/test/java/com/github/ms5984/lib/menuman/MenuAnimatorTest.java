@@ -0,0 +1,161 @@
+package com.github.ms5984.lib.menuman;
+
+import org.bukkit.Bukkit;
+import org.bukkit.Material;
+import org.bukkit.Server;
+import org.bukkit.entity.Player;
+import org.bukkit.event.inventory.InventoryCloseEvent;
+import org.bukkit.event.inventory.InventoryOpenEvent;
+import org.bukkit.inventory.Inventory;
+import org.bukkit.inventory.ItemStack;
+import org.bukkit.plugin.PluginManager;
+import org.bukkit.plugin.java.JavaPlugin;
+import org.bukkit.scheduler.BukkitScheduler;
+import org.bukkit.scheduler.BukkitTask;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.lang.reflect.Field;
+import java.util.logging.Logger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class MenuAnimatorTest {
+    final MenuAnimator animator = MenuAnimator.get();
+    final ItemStack stone = new ItemStack(Material.STONE);
+    final ItemStack dirt = new ItemStack(Material.DIRT);
+    final ItemStack glass = new ItemStack(Material.GLASS_PANE);
+
+    @BeforeEach
+    void resetScheduler() {
+        // the scheduler is shared between tests
+        clearInvocations(Bukkit.getScheduler());
+    }
+
+    @Test
+    void testAnimate(@Mock JavaPlugin plugin,
+                     @Mock Player player,
+                     @Mock InventoryOpenEvent openEvent,
+                     @Mock InventoryCloseEvent closeEvent) {
+        final Menu menu = new MenuBuilder(Menu.InventoryRows.ONE, "Animated")
+                .addElement(stone).setAnimation(2, stone, dirt).assignToSlots(0, 1)
+                .addElement(glass).setAnimation(3, glass, stone).assignToSlots(8)
+                .create(plugin);
+        assertArrayEquals(new int[]{2, 3}, menu.getTemplate().animationPeriods);
+        menu.open(player);
+        final ArgumentCaptor<Inventory> captor = ArgumentCaptor.forClass(Inventory.class);
+        verify(player).openInventory(captor.capture());
+        final Inventory inventory = captor.getValue();
+        // nothing animates without viewers
+        assertEquals(0, animator.getActive());
+        doReturn(player).when(openEvent).getPlayer();
+        menu.onOpen(openEvent);
+        assertEquals(1, animator.getActive());
+        verify(Bukkit.getScheduler(), times(1)).runTaskTimer(plugin, animator, 1L, 1L);
+        // run until both periods have changed frame once
+        for (int i = 0; i < 6; ++i) {
+            animator.run();
+            MenuUpdater.get().run();
+        }
+        verify(inventory, atLeastOnce()).setItem(0, dirt);
+        verify(inventory, atLeastOnce()).setItem(1, dirt);
+        verify(inventory, atLeastOnce()).setItem(8, stone);
+        // the last viewer leaving stops the animation
+        doReturn(player).when(closeEvent).getPlayer();
+        menu.onClose(closeEvent);
+        assertEquals(0, animator.getActive());
+        clearInvocations(inventory);
+        for (int i = 0; i < 6; ++i) {
+            animator.run();
+        }
+        assertEquals(0, MenuUpdater.get().getPending());
+        verify(inventory, never()).setItem(anyInt(), any());
+    }
+
+    @Test
+    void testDispose(@Mock JavaPlugin plugin,
+                     @Mock Player player,
+                     @Mock InventoryOpenEvent openEvent) {
+        final Menu menu = new MenuBuilder(Menu.InventoryRows.ONE, "Disposed")
+                .addElement(stone).setAnimation(1, stone, dirt).assignToSlots(4)
+                .create(plugin);
+        menu.open(player);
+        doReturn(player).when(openEvent).getPlayer();
+        menu.onOpen(openEvent);
+        assertEquals(1, animator.getActive());
+        menu.dispose();
+        assertEquals(0, animator.getActive());
+    }
+
+    @Test
+    void testDisableLastAnimated(@Mock JavaPlugin owner, @Mock JavaPlugin other,
+                                 @Mock BukkitTask task, @Mock Player player,
+                                 @Mock InventoryOpenEvent openEvent,
+                                 @Mock InventoryCloseEvent closeEvent) {
+        final BukkitScheduler scheduler = Bukkit.getScheduler();
+        doReturn(task).when(scheduler).runTaskTimer(owner, animator, 1L, 1L);
+        doReturn(player).when(openEvent).getPlayer();
+        doReturn(player).when(closeEvent).getPlayer();
+        final Menu owned = new MenuBuilder(Menu.InventoryRows.ONE, "Owned")
+                .addElement(stone).setAnimation(1, stone, dirt).assignToSlots(0)
+                .create(owner);
+        final Menu others = new MenuBuilder(Menu.InventoryRows.ONE, "Others")
+                .addElement(stone).setAnimation(1, stone, dirt).assignToSlots(0)
+                .create(other);
+        owned.open(player);
+        owned.onOpen(openEvent);
+        others.open(player);
+        others.onOpen(openEvent);
+        owned.onClose(closeEvent);
+        assertEquals(1, animator.getActive());
+        // the task of the remaining plugin stops with its last menu
+        animator.onDisable(other);
+        assertEquals(0, animator.getActive());
+        verify(task).cancel();
+        verify(Bukkit.getScheduler(), never()).runTaskTimer(other, animator, 1L, 1L);
+    }
+
+    @Test
+    void testFrames() {
+        final MenuElement element = new MenuElement(stone);
+        final AnimatedElement animation = new AnimatedElement(element, new ItemStack[]{stone, dirt, glass}, 2);
+        assertEquals(2, animation.getPeriod());
+        assertEquals(3, animation.getFrameCount());
+        assertSame(stone, animation.frameAt(0));
+        assertSame(stone, animation.frameAt(1));
+        assertSame(dirt, animation.frameAt(2));
+        assertSame(glass, animation.frameAt(4));
+        assertSame(stone, animation.frameAt(6));
+    }
+
+    @BeforeAll
+    public static void setupFakeServer(@Mock Server server,
+                                       @Mock PluginManager pluginManager,
+                                       @Mock BukkitScheduler scheduler,
+                                       @Mock BukkitTask task) {
+        // fake plugin manager
+        doReturn(pluginManager).when(server).getPluginManager();
+        // fake scheduler
+        doReturn(scheduler).when(server).getScheduler();
+        lenient().doReturn(task).when(scheduler).runTaskTimer(any(JavaPlugin.class), any(Runnable.class), anyLong(), anyLong());
+        // add logger
+        doReturn(Logger.getLogger("Test")).when(server).getLogger();
+        // fake inventories
+        doAnswer(inv -> mock(Inventory.class)).when(server).createInventory(any(MenuHolder.class), anyInt(), anyString());
+        // setup fake server
+        try {
+            final Field serverField = Bukkit.class.getDeclaredField("server");
+            serverField.setAccessible(true);
+            serverField.set(null, server);
+        } catch (NoSuchFieldException | IllegalAccessException e) {
+//            e.printStackTrace();
+        }
+    }
+}
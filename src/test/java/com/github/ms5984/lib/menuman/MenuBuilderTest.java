@@ -98,6 +98,16 @@ class MenuBuilderTest {
         assertFalse(menuBuilder.allowLowerInvShiftClick);
     }
 
+    @Test
+    void testSetOpenSlots() {
+        // test initial state
+        assertTrue(menuBuilder.openSlots.isEmpty());
+        // set a slot
+        assertEquals(SlotSet.of(4), menuBuilder.setOpenSlots(SlotSet.of(4)).openSlots);
+        // test out of range
+        assertThrows(IllegalArgumentException.class, () -> menuBuilder.setOpenSlots(SlotSet.of(27)));
+    }
+
     @Test
     void testAddElement(@Mock ItemStack itemStack, @Mock ClickAction clickAction) {
         // create temporary builder
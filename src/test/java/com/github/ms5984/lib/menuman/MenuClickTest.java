@@ -52,6 +52,51 @@ class MenuClickTest {
         assertSame(e.getClick(), menuClick.getClickType());
     }
 
+    @Test
+    void testGetHotbarButton() {
+        when(e.getHotbarButton()).thenReturn(3);
+        assertEquals(3, menuClick.getHotbarButton());
+    }
+
+    @Test
+    void testPrimitiveAccessors(@Mock Inventory bottom) {
+        when(e.getSlot()).thenReturn(testSlot);
+        assertEquals(testSlot, menuClick.slotIndex());
+        // top inventory
+        doReturn(inventory).when(e).getClickedInventory();
+        doReturn(inventory).when(e).getInventory();
+        assertTrue(menuClick.clickedTop());
+        doReturn(bottom).when(e).getClickedInventory();
+        assertFalse(menuClick.clickedTop());
+        doReturn(null).when(e).getClickedInventory();
+        assertFalse(menuClick.clickedTop());
+        // cursor
+        doReturn(org.bukkit.Material.STONE).when(cursor).getType();
+        doReturn(cursor, null).when(e).getCursor();
+        assertTrue(menuClick.hasCursorItem());
+        assertFalse(menuClick.hasCursorItem());
+    }
+
+    @Test
+    void testObtainRetainRecycle() {
+        // a constructed click is already safe to keep
+        assertSame(menuClick, menuClick.retain());
+        final MenuClick shared = MenuClick.obtain(e, player);
+        assertSame(player, shared.getPlayer());
+        // nested clicks do not clobber the shared instance
+        final MenuClick nested = MenuClick.obtain(e, player);
+        assertNotSame(shared, nested);
+        nested.recycle();
+        final MenuClick retained = shared.retain();
+        assertNotSame(shared, retained);
+        shared.recycle();
+        assertNull(shared.getPlayer());
+        assertSame(player, retained.getPlayer());
+        // the shared instance is reused once recycled
+        assertSame(shared, MenuClick.obtain(e, player));
+        shared.recycle();
+    }
+
     @Test
     void testGetSlotClicked() {
         // init stubs
@@ -2,11 +2,14 @@ package com.github.ms5984.lib.menuman;
 
 import org.bukkit.Material;
 import org.bukkit.inventory.ItemStack;
+import org.bukkit.inventory.meta.ItemMeta;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 
-import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.doReturn;
 
 @ExtendWith(MockitoExtension.class)
 class MenuElementTest {
@@ -16,4 +19,47 @@ class MenuElementTest {
     void testMenuElementGenerateCompleteWithNullValues() {
         assertSame(itemStack, new MenuElement(itemStack).generateComplete());
     }
+
+    @Test
+    void testRenderedIsCached() {
+        final MenuElement menuElement = new MenuElement(itemStack);
+        assertSame(menuElement.getRendered(), menuElement.getRendered());
+    }
+
+    @Test
+    void testGenerateCompleteIsACopy(@Mock ItemMeta meta) {
+        doReturn(meta).when(meta).clone();
+        final ItemStack base = new ItemStack(Material.STONE);
+        base.setItemMeta(meta);
+        final MenuElement menuElement = new MenuElement(base, "Styled");
+        final ItemStack rendered = menuElement.getRendered();
+        final ItemStack copy = menuElement.generateComplete();
+        assertNotSame(rendered, copy);
+        assertNotSame(copy, menuElement.generateComplete());
+        // changing a copy leaves the shared render alone
+        copy.setAmount(5);
+        assertEquals(1, rendered.getAmount());
+        assertSame(rendered, menuElement.getRendered());
+    }
+
+    @Test
+    void testBuilderInvalidatesRender() {
+        final ItemStack newItem = new ItemStack(Material.STONE);
+        final ElementBuilder elementBuilder = new MenuBuilder(Menu.InventoryRows.ONE, "Test title").addElement(itemStack);
+        final MenuElement menuElement = elementBuilder.assignToSlots(0).items.get(0);
+        assertSame(itemStack, menuElement.getRendered());
+        // changing the base item drops the cached render
+        elementBuilder.setItem(newItem);
+        assertSame(newItem, menuElement.getRendered());
+    }
+
+    @Test
+    void testIntern() {
+        final ItemStack first = new ItemStack(Material.DIRT);
+        final ItemStack second = new ItemStack(Material.DIRT);
+        assertNotSame(first, second);
+        assertSame(first, MenuElement.intern(first));
+        // equal items share the first instance
+        assertSame(first, MenuElement.intern(second));
+    }
 }
@@ -0,0 +1,51 @@
+package com.github.ms5984.lib.menuman;
+
+import org.bukkit.inventory.Inventory;
+import org.bukkit.inventory.InventoryHolder;
+import org.bukkit.inventory.InventoryView;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.doReturn;
+
+@ExtendWith(MockitoExtension.class)
+class MenuHolderTest {
+    @Mock
+    Menu menu;
+    @Mock
+    Inventory inventory;
+
+    @Test
+    void testGetMenu() {
+        assertSame(menu, new MenuHolder(menu).getMenu());
+    }
+
+    @Test
+    void testGetInventory() {
+        final MenuHolder holder = new MenuHolder(menu);
+        holder.setInventory(inventory);
+        assertSame(inventory, holder.getInventory());
+    }
+
+    @Test
+    void testFindMenu(@Mock InventoryHolder otherHolder) {
+        // test null
+        assertFalse(MenuHolder.findMenu((Inventory) null).isPresent());
+        // test foreign holder
+        doReturn(otherHolder).when(inventory).getHolder();
+        assertFalse(MenuHolder.findMenu(inventory).isPresent());
+        // test menu holder
+        doReturn(new MenuHolder(menu)).when(inventory).getHolder();
+        assertSame(menu, MenuHolder.findMenu(inventory).orElse(null));
+    }
+
+    @Test
+    void testFindMenuFromView(@Mock InventoryView view) {
+        doReturn(inventory).when(view).getTopInventory();
+        doReturn(new MenuHolder(menu)).when(inventory).getHolder();
+        assertSame(menu, MenuHolder.findMenu(view).orElse(null));
+    }
+}
@@ -0,0 +1,90 @@
+package com.github.ms5984.lib.menuman;
+
+import org.bukkit.Bukkit;
+import org.bukkit.Server;
+import org.bukkit.plugin.java.JavaPlugin;
+import org.bukkit.scheduler.BukkitScheduler;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.lang.reflect.Field;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class MenuReaperTest {
+    final MenuReaper reaper = MenuReaper.get();
+    @Mock
+    Menu menu;
+    @Mock
+    MenuRegistry registry;
+    @Mock
+    JavaPlugin plugin;
+
+    @BeforeEach
+    void setupMenu() {
+        lenient().doReturn(registry).when(menu).getRegistry();
+        lenient().doReturn(plugin).when(registry).getPlugin();
+    }
+
+    @Test
+    void testReleaseAfterDelay() {
+        reaper.schedule(menu, 3L);
+        reaper.run();
+        reaper.run();
+        verify(menu, never()).release();
+        reaper.run();
+        verify(menu).release();
+        assertEquals(-1L, menu.releaseDeadline);
+        // released only once
+        for (int i = 0; i < 128; ++i) reaper.run();
+        verify(menu, times(1)).release();
+    }
+
+    @Test
+    void testCancel() {
+        reaper.schedule(menu, 2L);
+        reaper.cancel(menu);
+        for (int i = 0; i < 128; ++i) reaper.run();
+        verify(menu, never()).release();
+    }
+
+    @Test
+    void testReschedule() {
+        reaper.schedule(menu, 2L);
+        reaper.cancel(menu);
+        reaper.schedule(menu, 5L);
+        for (int i = 0; i < 4; ++i) reaper.run();
+        verify(menu, never()).release();
+        reaper.run();
+        verify(menu).release();
+    }
+
+    @Test
+    void testLongDelayWrapsWheel() {
+        reaper.schedule(menu, 100L);
+        for (int i = 0; i < 99; ++i) reaper.run();
+        verify(menu, never()).release();
+        reaper.run();
+        verify(menu).release();
+    }
+
+    @BeforeAll
+    public static void setupFakeServer(@Mock Server server, @Mock BukkitScheduler scheduler) {
+        // fake scheduler
+        doReturn(scheduler).when(server).getScheduler();
+        // setup fake server
+        try {
+            final Field serverField = Bukkit.class.getDeclaredField("server");
+            serverField.setAccessible(true);
+            serverField.set(null, server);
+        } catch (NoSuchFieldException | IllegalAccessException e) {
+//            e.printStackTrace();
+        }
+    }
+}
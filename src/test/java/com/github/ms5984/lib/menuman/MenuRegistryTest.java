@@ -0,0 +1,113 @@
+package com.github.ms5984.lib.menuman;
+
+import org.bukkit.Bukkit;
+import org.bukkit.Server;
+import org.bukkit.event.Listener;
+import org.bukkit.event.inventory.InventoryClickEvent;
+import org.bukkit.event.server.PluginDisableEvent;
+import org.bukkit.inventory.Inventory;
+import org.bukkit.plugin.PluginManager;
+import org.bukkit.plugin.java.JavaPlugin;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.lang.reflect.Field;
+import java.util.logging.Logger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class MenuRegistryTest {
+
+    @Test
+    void testOfRegistersOnce(@Mock JavaPlugin plugin) {
+        final MenuRegistry registry = MenuRegistry.of(plugin);
+        // same registry for the same plugin
+        assertSame(registry, MenuRegistry.of(plugin));
+        assertSame(plugin, registry.getPlugin());
+        // only one listener registered
+        verify(Bukkit.getPluginManager(), times(1)).registerEvents(any(), eq(plugin));
+    }
+
+    @Test
+    void testGetMenu(@Mock JavaPlugin plugin, @Mock Inventory inventory, @Mock Menu menu) {
+        final MenuRegistry registry = MenuRegistry.of(plugin);
+        // not a menu inventory
+        assertFalse(registry.getMenu(inventory).isPresent());
+        // live menu inventory of this registry
+        doReturn(new MenuHolder(menu)).when(inventory).getHolder();
+        doReturn(registry).when(menu).getRegistry();
+        doReturn(true).when(menu).owns(inventory);
+        assertSame(menu, registry.getMenu(inventory).orElse(null));
+        // stale inventory (released or disposed)
+        doReturn(false).when(menu).owns(inventory);
+        assertFalse(registry.getMenu(inventory).isPresent());
+    }
+
+    @Test
+    void testDispatchClick(@Mock JavaPlugin plugin,
+                           @Mock Inventory inventory,
+                           @Mock Inventory otherInventory,
+                           @Mock Menu menu,
+                           @Mock InventoryClickEvent event) {
+        final MenuRegistry registry = MenuRegistry.of(plugin);
+        final ArgumentCaptor<Listener> captor = ArgumentCaptor.forClass(Listener.class);
+        verify(Bukkit.getPluginManager()).registerEvents(captor.capture(), eq(plugin));
+        final MenuRegistry.DispatchListener listener = (MenuRegistry.DispatchListener) captor.getValue();
+        doReturn(new MenuHolder(menu)).when(inventory).getHolder();
+        doReturn(registry).when(menu).getRegistry();
+        doReturn(true).when(menu).owns(inventory);
+        // other inventories are ignored
+        doReturn(otherInventory).when(event).getInventory();
+        listener.onMenuClick(event);
+        verify(menu, never()).onClick(any());
+        // menu inventories reach their menu
+        doReturn(inventory).when(event).getInventory();
+        listener.onMenuClick(event);
+        verify(menu).onClick(event);
+    }
+
+    @Test
+    void testPluginDisable(@Mock JavaPlugin plugin, @Mock JavaPlugin otherPlugin, @Mock Menu menu) {
+        final MenuRegistry registry = MenuRegistry.of(plugin);
+        final ArgumentCaptor<Listener> captor = ArgumentCaptor.forClass(Listener.class);
+        verify(Bukkit.getPluginManager()).registerEvents(captor.capture(), eq(plugin));
+        final MenuRegistry.DispatchListener listener = (MenuRegistry.DispatchListener) captor.getValue();
+        registry.register(menu, false);
+        assertEquals(1, registry.getMenuCount());
+        // other plugins are ignored
+        listener.onPluginDisable(new PluginDisableEvent(otherPlugin));
+        verify(menu, never()).dispose();
+        // our plugin disposes all menus and drops the registry
+        listener.onPluginDisable(new PluginDisableEvent(plugin));
+        verify(menu).dispose();
+        assertEquals(0, registry.getMenuCount());
+        assertNotSame(registry, MenuRegistry.of(plugin));
+    }
+
+    @BeforeAll
+    public static void setupFakeServer(@Mock Server server, @Mock PluginManager pluginManager) {
+        // fake name, version, bukkitVersion
+        doReturn("FakeServerTest").when(server).getName();
+        doReturn("1.0").when(server).getVersion();
+        doReturn("fakeBukkitVersion").when(server).getBukkitVersion();
+        // fake plugin manager
+        doReturn(pluginManager).when(server).getPluginManager();
+        // add logger
+        doReturn(Logger.getLogger("Test")).when(server).getLogger();
+        // setup fake server
+        try {
+            final Field serverField = Bukkit.class.getDeclaredField("server");
+            serverField.setAccessible(true);
+            serverField.set(null, server);
+        } catch (NoSuchFieldException | IllegalAccessException e) {
+//            e.printStackTrace();
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package com.github.ms5984.lib.menuman;
+
+import org.bukkit.Bukkit;
+import org.bukkit.Server;
+import org.bukkit.entity.Player;
+import org.bukkit.inventory.Inventory;
+import org.bukkit.inventory.ItemStack;
+import org.bukkit.plugin.PluginManager;
+import org.bukkit.plugin.java.JavaPlugin;
+import org.bukkit.scheduler.BukkitScheduler;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.lang.reflect.Field;
+import java.util.logging.Logger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class MenuTemplateTest {
+    final int[] slots = {0, 4, 8};
+
+    MenuTemplate createTemplate(JavaPlugin plugin, ItemStack item, ClickAction action) {
+        final MenuBuilder menuBuilder = new MenuBuilder(Menu.InventoryRows.ONE, "Template");
+        menuBuilder.addElement(item).setAction(action).assignToSlots(slots);
+        return menuBuilder.createTemplate(plugin);
+    }
+
+    ItemStack[] openAndCaptureFrame(Menu menu, Player player) {
+        final ArgumentCaptor<Inventory> inventoryCaptor = ArgumentCaptor.forClass(Inventory.class);
+        menu.open(player);
+        verify(player, atLeastOnce()).openInventory(inventoryCaptor.capture());
+        final ArgumentCaptor<ItemStack[]> frameCaptor = ArgumentCaptor.forClass(ItemStack[].class);
+        verify(inventoryCaptor.getValue()).setContents(frameCaptor.capture());
+        return frameCaptor.getValue();
+    }
+
+    @Test
+    void testSpawn(@Mock JavaPlugin plugin, @Mock ItemStack item, @Mock ClickAction action,
+                   @Mock Player player1, @Mock Player player2) {
+        final MenuTemplate template = createTemplate(plugin, item, action);
+        final Menu menu1 = template.spawn();
+        final Menu menu2 = template.spawn();
+        // distinct menus of the same template
+        assertNotSame(menu1, menu2);
+        assertSame(template, menu1.getTemplate());
+        assertSame(template.getRegistry(), menu2.getRegistry());
+        assertEquals("Template", menu1.title);
+        // without overrides both materialize the shared frame
+        assertSame(openAndCaptureFrame(menu1, player1), openAndCaptureFrame(menu2, player2));
+    }
+
+    @Test
+    void testSpawnUntitled(@Mock JavaPlugin plugin) {
+        final MenuTemplate template = new MenuBuilder(Menu.InventoryRows.ONE, null).createTemplate(plugin);
+        assertNull(template.getTitle());
+        // spawned menus share one generated title
+        final Menu menu1 = template.spawn();
+        final Menu menu2 = template.spawn();
+        assertTrue(menu1.title.startsWith("Menu#"));
+        assertEquals(menu1.title, menu2.title);
+        // other templates generate their own
+        final Menu other = new MenuBuilder(Menu.InventoryRows.ONE, null).createTemplate(plugin).spawn();
+        assertNotEquals(menu1.title, other.title);
+    }
+
+    @Test
+    void testOverride(@Mock JavaPlugin plugin, @Mock ItemStack item, @Mock ItemStack other,
+                      @Mock ClickAction action, @Mock Player player1, @Mock Player player2) {
+        final MenuTemplate template = createTemplate(plugin, item, action);
+        final Menu menu1 = template.spawn();
+        final Menu menu2 = template.spawn();
+        // bad slots
+        assertThrows(IllegalArgumentException.class, () -> menu1.setOverride(9, other, null));
+        assertThrows(IllegalArgumentException.class, () -> menu1.clearOverride(-1));
+        menu1.setOverride(4, other, null);
+        final ItemStack[] frame1 = openAndCaptureFrame(menu1, player1);
+        final ItemStack[] frame2 = openAndCaptureFrame(menu2, player2);
+        // only the overriding menu sees the change
+        assertSame(other, frame1[4]);
+        assertSame(item, frame2[4]);
+        assertSame(frame1[0], frame2[0]);
+        // restoring updates the live inventory
+        menu1.clearOverride(4);
+        verify(menu1.getCurrentInventory().orElseThrow(AssertionError::new)).setItem(4, item);
+    }
+
+    @BeforeAll
+    public static void setupFakeServer(@Mock Server server,
+                                       @Mock PluginManager pluginManager,
+                                       @Mock BukkitScheduler scheduler) {
+        // fake name, version, bukkitVersion
+        doReturn("FakeServerTest").when(server).getName();
+        doReturn("1.0").when(server).getVersion();
+        doReturn("fakeBukkitVersion").when(server).getBukkitVersion();
+        // fake plugin manager
+        doReturn(pluginManager).when(server).getPluginManager();
+        // fake scheduler
+        doReturn(scheduler).when(server).getScheduler();
+        // add logger
+        doReturn(Logger.getLogger("Test")).when(server).getLogger();
+        // setup fake server
+        try {
+            final Field serverField = Bukkit.class.getDeclaredField("server");
+            serverField.setAccessible(true);
+            serverField.set(null, server);
+        } catch (NoSuchFieldException | IllegalAccessException e) {
+//            e.printStackTrace();
+        }
+        // fake createInventory (a new inventory each call)
+        doAnswer(invocationOnMock -> mock(Inventory.class)).when(server).createInventory(any(MenuHolder.class), anyInt(), anyString());
+    }
+}
@@ -3,10 +3,16 @@ package com.github.ms5984.lib.menuman;
 import org.bukkit.Bukkit;
 import org.bukkit.Server;
 import org.bukkit.entity.Player;
+import org.bukkit.event.inventory.ClickType;
+import org.bukkit.event.inventory.InventoryClickEvent;
+import org.bukkit.event.inventory.InventoryCloseEvent;
+import org.bukkit.event.inventory.InventoryOpenEvent;
 import org.bukkit.inventory.Inventory;
+import org.bukkit.inventory.InventoryView;
 import org.bukkit.inventory.ItemStack;
 import org.bukkit.plugin.PluginManager;
 import org.bukkit.plugin.java.JavaPlugin;
+import org.bukkit.scheduler.BukkitScheduler;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -16,9 +22,19 @@ import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
 
 import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.logging.Logger;
 
-import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class)
@@ -50,13 +66,377 @@ class MenuTest {
         // Capture generated inventory
         verify(player).openInventory(captor.capture());
         final Inventory inventory = captor.getValue();
-        // Test slots (can't be more specific at this point with item arg matcher)
+        // Capture the frame set in one call
+        ArgumentCaptor<ItemStack[]> frameCaptor = ArgumentCaptor.forClass(ItemStack[].class);
+        verify(inventory).setContents(frameCaptor.capture());
+        verify(inventory, never()).setItem(anyInt(), any());
+        final ItemStack[] frame = frameCaptor.getValue();
+        assertEquals(Menu.InventoryRows.THREE.slotCount, frame.length);
+        // Test slots (elements hold their own copy of each item)
         for (int s1 : slots1) {
-            verify(inventory).setItem(eq(s1), any());
+            assertNotNull(frame[s1]);
+            assertSame(frame[slots1[0]], frame[s1]);
         }
         for (int s2 : slots2) {
-            verify(inventory).setItem(eq(s2), any());
+            assertNotNull(frame[s2]);
+            assertSame(frame[slots2[0]], frame[s2]);
         }
+        assertNotSame(frame[slots1[0]], frame[slots2[0]]);
+        assertNull(frame[1]);
+    }
+
+    @Test
+    void testOnClick(@Mock JavaPlugin plugin,
+                     @Mock ClickAction clickAction,
+                     @Mock InventoryClickEvent event,
+                     @Mock InventoryView view,
+                     @Mock Inventory top,
+                     @Mock Inventory bottom,
+                     @Mock Player player) {
+        final Menu clickMenu = new MenuBuilder(Menu.InventoryRows.ONE, "Click test")
+                .addElement(item1).setAction(clickAction).assignToSlots(4)
+                .create(plugin);
+        // fake a top inventory click by player
+        doReturn(view).when(event).getView();
+        doReturn(bottom).when(view).getBottomInventory();
+        doReturn(top).when(event).getClickedInventory();
+        doReturn(top).when(event).getInventory();
+        doReturn(-1).when(event).getHotbarButton();
+        doReturn(player).when(event).getWhoClicked();
+        // element slot: cancelled and action run
+        doReturn(4).when(event).getSlot();
+        clickMenu.onClick(event);
+        verify(event, atLeastOnce()).setCancelled(true);
+        verify(clickAction).onClick(any());
+        // empty slot: no action
+        doReturn(5).when(event).getSlot();
+        clickMenu.onClick(event);
+        // outside of the window: no action
+        doReturn(-999).when(event).getSlot();
+        clickMenu.onClick(event);
+        verify(clickAction, times(1)).onClick(any());
+    }
+
+    void stubTopClick(InventoryClickEvent event, InventoryView view, Inventory top, Player player) {
+        // fake a top inventory click by player
+        doReturn(view).when(event).getView();
+        doReturn(top).when(event).getClickedInventory();
+        doReturn(top).when(event).getInventory();
+        doReturn(-1).when(event).getHotbarButton();
+        doReturn(player).when(event).getWhoClicked();
+    }
+
+    @Test
+    void testOnClickReusesMenuClick(@Mock JavaPlugin plugin,
+                                    @Mock InventoryClickEvent event,
+                                    @Mock InventoryView view,
+                                    @Mock Inventory top,
+                                    @Mock Player player) {
+        final List<MenuClick> seen = new ArrayList<>();
+        final Menu clickMenu = new MenuBuilder(Menu.InventoryRows.ONE, "Reuse test")
+                .addElement(item1).setAction(seen::add).assignToSlots(4)
+                .create(plugin);
+        stubTopClick(event, view, top, player);
+        doReturn(4).when(event).getSlot();
+        clickMenu.onClick(event);
+        clickMenu.onClick(event);
+        assertEquals(2, seen.size());
+        assertSame(seen.get(0), seen.get(1));
+        // released after the action
+        assertNull(seen.get(0).getPlayer());
+    }
+
+    @Test
+    void testTypedActions(@Mock JavaPlugin plugin,
+                          @Mock ClickAction general,
+                          @Mock ClickAction right,
+                          @Mock InventoryClickEvent event,
+                          @Mock InventoryView view,
+                          @Mock Inventory top,
+                          @Mock Player player) {
+        final Menu clickMenu = new MenuBuilder(Menu.InventoryRows.ONE, "Typed test")
+                .addElement(item1).setAction(general).onRightClick(right).assignToSlots(4)
+                .addElement(item2).onRightClick(right).assignToSlots(5)
+                .create(plugin);
+        stubTopClick(event, view, top, player);
+        doReturn(4).when(event).getSlot();
+        // typed action first
+        doReturn(ClickType.RIGHT).when(event).getClick();
+        clickMenu.onClick(event);
+        verify(right, times(1)).onClick(any());
+        verify(general, never()).onClick(any());
+        // other types fall back to the general action
+        doReturn(ClickType.LEFT).when(event).getClick();
+        clickMenu.onClick(event);
+        verify(general, times(1)).onClick(any());
+        // no handler for the type: nothing runs
+        doReturn(5).when(event).getSlot();
+        clickMenu.onClick(event);
+        verify(right, times(1)).onClick(any());
+        verify(general, times(1)).onClick(any());
+    }
+
+    @Test
+    void testThrottledClick(@Mock JavaPlugin plugin,
+                            @Mock ClickAction clickAction,
+                            @Mock InventoryClickEvent event,
+                            @Mock InventoryView view,
+                            @Mock Inventory top,
+                            @Mock Player player) {
+        final Menu clickMenu = new MenuBuilder(Menu.InventoryRows.ONE, "Throttle test")
+                .addElement(item1).setAction(clickAction)
+                .setClickThrottle(ClickThrottle.minInterval(1, TimeUnit.HOURS))
+                .assignToSlots(4, 5)
+                .create(plugin);
+        stubTopClick(event, view, top, player);
+        doReturn(4).when(event).getSlot();
+        // first click runs, the repeat is cancelled
+        clickMenu.onClick(event);
+        clickMenu.onClick(event);
+        verify(clickAction, times(1)).onClick(any());
+        // each slot is limited separately
+        doReturn(5).when(event).getSlot();
+        clickMenu.onClick(event);
+        verify(clickAction, times(2)).onClick(any());
+    }
+
+    @Test
+    void testThrottledByMenu(@Mock JavaPlugin plugin,
+                             @Mock ClickAction clickAction,
+                             @Mock InventoryClickEvent event,
+                             @Mock InventoryView view,
+                             @Mock Inventory top,
+                             @Mock Player player) {
+        final ClickThrottle slotThrottle = ClickThrottle.minInterval(1, TimeUnit.HOURS);
+        final Menu clickMenu = new MenuBuilder(Menu.InventoryRows.ONE, "Menu throttle test")
+                .setClickThrottle(ClickThrottle.minInterval(1, TimeUnit.HOURS))
+                .addElement(item1).setAction(clickAction).setClickThrottle(slotThrottle).assignToSlots(4, 5)
+                .create(plugin);
+        stubTopClick(event, view, top, player);
+        doReturn(5).when(event).getSlot();
+        clickMenu.onClick(event);
+        verify(clickAction, times(1)).onClick(any());
+        // refused by the menu limit, so the slot limit does not count it
+        doReturn(4).when(event).getSlot();
+        clickMenu.onClick(event);
+        verify(clickAction, times(1)).onClick(any());
+        assertTrue(slotThrottle.peek(player.getEntityId(), 4, System.nanoTime()));
+    }
+
+    @Test
+    void testInterceptors(@Mock JavaPlugin plugin,
+                          @Mock ClickAction clickAction,
+                          @Mock InventoryClickEvent event,
+                          @Mock InventoryView view,
+                          @Mock Inventory top,
+                          @Mock Player player) {
+        final List<String> calls = new ArrayList<>();
+        MenuRegistry.of(plugin).addInterceptor(click -> calls.add("global"));
+        final AtomicBoolean allow = new AtomicBoolean(true);
+        final Menu clickMenu = new MenuBuilder(Menu.InventoryRows.ONE, "Interceptor test")
+                .addInterceptor(click -> calls.add("menu"))
+                .addElement(item1).setAction(clickAction)
+                .addInterceptor(click -> calls.add("element") && allow.get())
+                .assignToSlots(4)
+                .addElement(item2).setAction(clickAction).assignToSlots(5)
+                .create(plugin);
+        stubTopClick(event, view, top, player);
+        // chains run global, menu, element, then the action
+        doReturn(4).when(event).getSlot();
+        clickMenu.onClick(event);
+        assertEquals(Arrays.asList("global", "menu", "element"), calls);
+        verify(clickAction, times(1)).onClick(any());
+        // element interceptors only apply to their slots
+        calls.clear();
+        doReturn(5).when(event).getSlot();
+        clickMenu.onClick(event);
+        assertEquals(Arrays.asList("global", "menu"), calls);
+        verify(clickAction, times(2)).onClick(any());
+        // returning false skips the action
+        allow.set(false);
+        doReturn(4).when(event).getSlot();
+        clickMenu.onClick(event);
+        verify(clickAction, times(2)).onClick(any());
+    }
+
+    @Test
+    void testLockedClick(@Mock JavaPlugin plugin,
+                         @Mock ClickAction clickAction,
+                         @Mock InventoryClickEvent event,
+                         @Mock InventoryView view,
+                         @Mock Inventory top,
+                         @Mock Player player) {
+        final Menu clickMenu = new MenuBuilder(Menu.InventoryRows.ONE, "Lock test")
+                .addElement(item1).setAction(clickAction).assignToSlots(4, 5)
+                .create(plugin);
+        stubTopClick(event, view, top, player);
+        doReturn(4).when(event).getSlot();
+        // locked slot refuses the click
+        clickMenu.lock(4);
+        clickMenu.onClick(event);
+        verify(clickAction, never()).onClick(any());
+        // other slots are unaffected
+        doReturn(5).when(event).getSlot();
+        clickMenu.onClick(event);
+        verify(clickAction, times(1)).onClick(any());
+        // menu lock refuses every slot
+        clickMenu.unlock(4);
+        clickMenu.lock(Menu.MENU_LOCK);
+        clickMenu.onClick(event);
+        verify(clickAction, times(1)).onClick(any());
+        clickMenu.unlock(Menu.MENU_LOCK);
+        assertFalse(clickMenu.isLocked(4));
+        clickMenu.onClick(event);
+        verify(clickAction, times(2)).onClick(any());
+    }
+
+    @Test
+    void testViewerCountRelease(@Mock Player player,
+                                @Mock InventoryOpenEvent openEvent,
+                                @Mock InventoryCloseEvent closeEvent) {
+        // no open event arrived (cancelled open): release is scheduled
+        menu.open(player);
+        assertTrue(menu.releaseDeadline >= 0);
+        // open event counts the viewer and cancels the release
+        doReturn(player).when(openEvent).getPlayer();
+        menu.onOpen(openEvent);
+        assertEquals(-1L, menu.releaseDeadline);
+        assertEquals(1, menu.getViewerCount());
+        assertTrue(menu.getViewers().contains(player));
+        // last close schedules the release
+        doReturn(player).when(closeEvent).getPlayer();
+        menu.onClose(closeEvent);
+        assertEquals(0, menu.getViewerCount());
+        assertTrue(menu.releaseDeadline >= 0);
+        // release drops the inventory
+        menu.release();
+        assertFalse(menu.getCurrentInventory().isPresent());
+    }
+
+    @Test
+    void testSwitchTo(@Mock JavaPlugin plugin,
+                      @Mock Player player,
+                      @Mock InventoryOpenEvent openEvent) {
+        final ItemStack other = mock(ItemStack.class);
+        final Menu from = new MenuBuilder(Menu.InventoryRows.ONE, "Switch")
+                .addElement(item1).assignToSlots(0, 1)
+                .create(plugin);
+        final Menu to = new MenuBuilder(Menu.InventoryRows.ONE, "Switch")
+                .addElement(item1).assignToSlots(0)
+                .addElement(other).assignToSlots(2)
+                .create(plugin);
+        from.open(player);
+        final ArgumentCaptor<Inventory> captor = ArgumentCaptor.forClass(Inventory.class);
+        verify(player).openInventory(captor.capture());
+        final Inventory inventory = captor.getValue();
+        final ArgumentCaptor<ItemStack[]> frameCaptor = ArgumentCaptor.forClass(ItemStack[].class);
+        verify(inventory).setContents(frameCaptor.capture());
+        doReturn(frameCaptor.getValue()).when(inventory).getContents();
+        doReturn(player).when(openEvent).getPlayer();
+        from.onOpen(openEvent);
+        // same rows and title: the window is reused
+        assertTrue(from.switchTo(player, to));
+        verify(player, times(1)).openInventory(any(Inventory.class));
+        assertSame(inventory, to.getCurrentInventory().orElse(null));
+        assertFalse(from.getCurrentInventory().isPresent());
+        assertTrue(to.getViewers().contains(player));
+        assertEquals(0, from.getViewerCount());
+        assertTrue(to.owns(inventory));
+        assertFalse(from.owns(inventory));
+        // only differing slots are written
+        verify(inventory).setItem(1, null);
+        verify(inventory).setItem(eq(2), notNull());
+        verify(inventory, never()).setItem(eq(0), any());
+        // a different title falls back to a deferred open
+        final Menu elsewhere = new MenuBuilder(Menu.InventoryRows.ONE, "Elsewhere").create(plugin);
+        doReturn(UUID.randomUUID()).when(player).getUniqueId();
+        assertFalse(to.switchTo(player, elsewhere));
+        assertSame(inventory, to.getCurrentInventory().orElse(null));
+        DeferredActions.get().run();
+        verify(player, times(2)).openInventory(any(Inventory.class));
+    }
+
+    @Test
+    void testViewers(@Mock Player player1,
+                     @Mock Player player2,
+                     @Mock InventoryOpenEvent openEvent,
+                     @Mock InventoryCloseEvent closeEvent) {
+        final Set<Player> viewers = menu.getViewers();
+        assertTrue(viewers.isEmpty());
+        // open for two players; duplicates are ignored
+        doReturn(player1, player2, player1).when(openEvent).getPlayer();
+        menu.onOpen(openEvent);
+        menu.onOpen(openEvent);
+        menu.onOpen(openEvent);
+        assertEquals(2, menu.getViewerCount());
+        // live view, not a copy
+        assertSame(viewers, menu.getViewers());
+        assertTrue(viewers.contains(player1));
+        assertTrue(viewers.contains(player2));
+        final List<Player> visited = new ArrayList<>();
+        menu.forEachViewer(visited::add);
+        assertEquals(2, visited.size());
+        // read-only
+        assertThrows(UnsupportedOperationException.class, () -> viewers.add(player1));
+        assertThrows(UnsupportedOperationException.class, viewers::clear);
+        // close for one player
+        doReturn(player1).when(closeEvent).getPlayer();
+        menu.onClose(closeEvent);
+        assertEquals(1, menu.getViewerCount());
+        assertFalse(viewers.contains(player1));
+        // changes while iterating are detected
+        final Iterator<Player> iterator = viewers.iterator();
+        doReturn(player2).when(closeEvent).getPlayer();
+        menu.onClose(closeEvent);
+        assertThrows(ConcurrentModificationException.class, iterator::next);
+    }
+
+    @Test
+    void testReleaseMissedViewers(@Mock Player player) {
+        final ArgumentCaptor<Inventory> captor = ArgumentCaptor.forClass(Inventory.class);
+        // opened without an open event
+        menu.open(player);
+        verify(player).openInventory(captor.capture());
+        final Inventory inventory = captor.getValue();
+        doReturn(Collections.singletonList(player)).when(inventory).getViewers();
+        menu.release();
+        // the missed viewer is tracked and the release checked again
+        assertTrue(menu.getViewers().contains(player));
+        assertTrue(menu.getCurrentInventory().isPresent());
+        assertTrue(menu.releaseDeadline >= 0L);
+        // its close was missed as well
+        doReturn(Collections.emptyList()).when(inventory).getViewers();
+        menu.release();
+        assertEquals(0, menu.getViewerCount());
+        assertFalse(menu.getCurrentInventory().isPresent());
+        MenuReaper.get().cancel(menu);
+    }
+
+    @Test
+    void testDispose(@Mock Player player) {
+        ArgumentCaptor<Inventory> captor = ArgumentCaptor.forClass(Inventory.class);
+        // Open menu for fake player
+        menu.open(player);
+        verify(player).openInventory(captor.capture());
+        doReturn(Collections.singletonList(player)).when(captor.getValue()).getViewers();
+        // Dispose closes current viewers
+        menu.dispose();
+        assertTrue(menu.isDisposed());
+        verify(player).closeInventory();
+        assertFalse(menu.getCurrentInventory().isPresent());
+        // Disposed menus can't be opened again
+        assertThrows(IllegalStateException.class, () -> menu.open(player));
+    }
+
+    @Test
+    void testMenuHolder(@Mock Player player) {
+        ArgumentCaptor<MenuHolder> captor = ArgumentCaptor.forClass(MenuHolder.class);
+        menu.open(player);
+        // Capture the holder given to the server
+        verify(Bukkit.getServer(), atLeastOnce()).createInventory(captor.capture(), anyInt(), anyString());
+        final MenuHolder holder = captor.getValue();
+        assertSame(menu, holder.getMenu());
+        assertSame(menu.getCurrentInventory().orElse(null), holder.getInventory());
     }
 
     @Test
@@ -70,13 +450,15 @@ class MenuTest {
     @BeforeAll
     public static void setupFakeServerAndMenu(@Mock Server server,
                                               @Mock PluginManager pluginManager,
-                                              @Mock Inventory inventory) {
+                                              @Mock BukkitScheduler scheduler) {
         // fake name, version, bukkitVersion
         doReturn("FakeServerTest").when(server).getName();
         doReturn("1.0").when(server).getVersion();
         doReturn("fakeBukkitVersion").when(server).getBukkitVersion();
         // fake plugin manager
         doReturn(pluginManager).when(server).getPluginManager();
+        // fake scheduler
+        doReturn(scheduler).when(server).getScheduler();
         // add logger
         doReturn(Logger.getLogger("Test")).when(server).getLogger();
         // setup fake server
@@ -87,7 +469,7 @@ class MenuTest {
         } catch (NoSuchFieldException | IllegalAccessException e) {
 //            e.printStackTrace();
         }
-        // fake createInventory
-        doAnswer(invocationOnMock -> inventory).when(server).createInventory(isNull(), anyInt(), anyString());
+        // fake createInventory (a new inventory each call)
+        doAnswer(invocationOnMock -> mock(Inventory.class)).when(server).createInventory(any(MenuHolder.class), anyInt(), anyString());
     }
 }
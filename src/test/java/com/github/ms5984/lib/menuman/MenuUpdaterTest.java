@@ -0,0 +1,168 @@
+package com.github.ms5984.lib.menuman;
+
+import org.bukkit.Bukkit;
+import org.bukkit.Material;
+import org.bukkit.Server;
+import org.bukkit.entity.Player;
+import org.bukkit.inventory.Inventory;
+import org.bukkit.inventory.ItemStack;
+import org.bukkit.plugin.PluginManager;
+import org.bukkit.plugin.java.JavaPlugin;
+import org.bukkit.scheduler.BukkitScheduler;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.lang.reflect.Field;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.logging.Logger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class MenuUpdaterTest {
+    final MenuUpdater updater = MenuUpdater.get();
+    final MenuElement stone = new MenuElement(new ItemStack(Material.STONE));
+    final MenuElement dirt = new MenuElement(new ItemStack(Material.DIRT));
+
+    @BeforeEach
+    void resetScheduler() {
+        // the scheduler is shared between tests
+        clearInvocations(Bukkit.getScheduler());
+    }
+
+    private Inventory openMenu(Menu menu, Player player) {
+        menu.open(player);
+        final ArgumentCaptor<Inventory> captor = ArgumentCaptor.forClass(Inventory.class);
+        verify(player).openInventory(captor.capture());
+        return captor.getValue();
+    }
+
+    @Test
+    void testBatchedFlush(@Mock JavaPlugin plugin, @Mock Player player) {
+        final Menu menu = new MenuBuilder(Menu.InventoryRows.ONE, "Update test").create(plugin);
+        final Inventory inventory = openMenu(menu, player);
+        // many updates in a tick: one task, one queue entry
+        menu.update(0, stone).update(0, dirt).update(1, stone);
+        menu.updateAll(SlotSet.of(2, 3), dirt);
+        assertEquals(1, updater.getPending());
+        verify(Bukkit.getScheduler(), times(1)).runTask(plugin, updater);
+        verify(inventory, never()).setItem(anyInt(), any());
+        // slot 3 already shows dirt; it is skipped
+        lenient().doReturn(new ItemStack(Material.DIRT)).when(inventory).getItem(3);
+        updater.run();
+        verify(inventory).setItem(0, dirt.getRendered());
+        verify(inventory).setItem(1, stone.getRendered());
+        verify(inventory).setItem(2, dirt.getRendered());
+        verify(inventory, never()).setItem(eq(3), any());
+        assertEquals(0, updater.getPending());
+        assertThrows(IllegalArgumentException.class, () -> menu.update(9, stone));
+    }
+
+    @Test
+    void testUpdateAllMap(@Mock JavaPlugin plugin, @Mock Player player) {
+        final Menu menu = new MenuBuilder(Menu.InventoryRows.ONE, "Map test")
+                .addElement(new ItemStack(Material.STONE)).assignToSlots(4)
+                .create(plugin);
+        final Inventory inventory = openMenu(menu, player);
+        final Map<Integer, MenuElement> changes = new HashMap<>();
+        changes.put(3, dirt);
+        changes.put(4, null);
+        menu.updateAll(changes);
+        lenient().doReturn(new ItemStack(Material.STONE)).when(inventory).getItem(4);
+        updater.run();
+        verify(inventory).setItem(3, dirt.getRendered());
+        verify(inventory).setItem(4, null);
+        // a new inventory starts from the updated frame
+        menu.release();
+        menu.open(player);
+        final ArgumentCaptor<Inventory> captor = ArgumentCaptor.forClass(Inventory.class);
+        verify(player, times(2)).openInventory(captor.capture());
+        final ArgumentCaptor<ItemStack[]> frameCaptor = ArgumentCaptor.forClass(ItemStack[].class);
+        verify(captor.getValue()).setContents(frameCaptor.capture());
+        assertSame(dirt.getRendered(), frameCaptor.getValue()[3]);
+        assertNull(frameCaptor.getValue()[4]);
+    }
+
+    @Test
+    void testBackoffUnderLag(@Mock JavaPlugin plugin, @Mock Player player) {
+        final LoadGovernor governor = LoadGovernor.get();
+        final Menu menu = new MenuBuilder(Menu.InventoryRows.ONE, "Lag test")
+                .setUpdatePriority(LoadGovernor.Priority.LOW)
+                .create(plugin);
+        final Inventory inventory = openMenu(menu, player);
+        // drive the governor into heavy lag
+        long now = System.nanoTime() + 2_000_000_000L;
+        governor.sample(now);
+        for (int i = 0; i < 60; ++i) {
+            now += 200_000_000L;
+            governor.sample(now);
+        }
+        final long deferred = governor.getDeferredUpdates();
+        menu.update(0, stone);
+        // find a tick on which the menu is backed off
+        while (governor.allows(LoadGovernor.Priority.LOW)) {
+            now += 200_000_000L;
+            governor.sample(now);
+        }
+        updater.run();
+        verify(inventory, never()).setItem(anyInt(), any());
+        assertEquals(deferred + 1, governor.getDeferredUpdates());
+        // still queued, collecting changes
+        assertEquals(1, updater.getPending());
+        menu.update(0, dirt);
+        assertEquals(1, updater.getPending());
+        // recover: the coalesced change is sent once
+        for (int i = 0; i < 300; ++i) {
+            now += 50_000_000L;
+            governor.sample(now);
+        }
+        updater.run();
+        verify(inventory, times(1)).setItem(0, dirt.getRendered());
+        verify(inventory, never()).setItem(0, stone.getRendered());
+    }
+
+    @Test
+    void testPluginDisable(@Mock JavaPlugin plugin, @Mock Player player) {
+        final Menu menu = new MenuBuilder(Menu.InventoryRows.ONE, "Disable test").create(plugin);
+        final Inventory inventory = openMenu(menu, player);
+        menu.update(0, stone);
+        updater.onDisable(plugin);
+        assertEquals(0, updater.getPending());
+        updater.run();
+        verify(inventory, never()).setItem(anyInt(), any());
+        // the menu can be queued again
+        menu.update(0, dirt);
+        assertEquals(1, updater.getPending());
+        updater.run();
+        verify(inventory).setItem(0, dirt.getRendered());
+    }
+
+    @BeforeAll
+    public static void setupFakeServer(@Mock Server server,
+                                       @Mock PluginManager pluginManager,
+                                       @Mock BukkitScheduler scheduler) {
+        // fake plugin manager
+        doReturn(pluginManager).when(server).getPluginManager();
+        // fake scheduler
+        doReturn(scheduler).when(server).getScheduler();
+        // add logger
+        doReturn(Logger.getLogger("Test")).when(server).getLogger();
+        // fake inventories
+        doAnswer(inv -> mock(Inventory.class)).when(server).createInventory(any(MenuHolder.class), anyInt(), anyString());
+        // setup fake server
+        try {
+            final Field serverField = Bukkit.class.getDeclaredField("server");
+            serverField.setAccessible(true);
+            serverField.set(null, server);
+        } catch (NoSuchFieldException | IllegalAccessException e) {
+//            e.printStackTrace();
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package com.github.ms5984.lib.menuman;
+
+import org.bukkit.Bukkit;
+import org.bukkit.Server;
+import org.bukkit.inventory.ItemStack;
+import org.bukkit.plugin.PluginManager;
+import org.bukkit.plugin.java.JavaPlugin;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.lang.reflect.Field;
+import java.util.Collections;
+import java.util.logging.Logger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.doReturn;
+
+@ExtendWith(MockitoExtension.class)
+class PaginatedMenuBuilderTest {
+
+    final PaginatedMenuBuilder<String> builder = new PaginatedMenuBuilder<>(Menu.InventoryRows.THREE, "Pages");
+
+    @Test
+    void testDefaults() {
+        // all rows but the last, navigation in the last row
+        assertEquals(SlotSet.range(0, 18), builder.contentSlots);
+        assertEquals(18, builder.previousSlot);
+        assertEquals(26, builder.nextSlot);
+        // one row menus keep the ends for navigation
+        final PaginatedMenuBuilder<String> oneRow = new PaginatedMenuBuilder<>(Menu.InventoryRows.ONE, "Pages");
+        assertEquals(SlotSet.range(1, 8), oneRow.contentSlots);
+        assertEquals(0, oneRow.previousSlot);
+        assertEquals(8, oneRow.nextSlot);
+    }
+
+    @Test
+    void testSetContentSlots() {
+        // empty, out of range or overlapping navigation
+        assertThrows(IllegalArgumentException.class, () -> builder.setContentSlots(SlotSet.empty()));
+        assertThrows(IllegalArgumentException.class, () -> builder.setContentSlots(SlotSet.of(27)));
+        assertThrows(IllegalArgumentException.class, () -> builder.setContentSlots(SlotSet.of(1, 18)));
+        // test valid
+        final SlotSet slots = SlotSet.range(10, 17);
+        assertSame(builder, builder.setContentSlots(slots));
+        assertEquals(slots, builder.contentSlots);
+    }
+
+    @Test
+    void testSetButtons(@Mock ItemStack previous, @Mock ItemStack next) {
+        // content slots cannot hold buttons
+        assertThrows(IllegalArgumentException.class, () -> builder.setPreviousButton(0, previous));
+        assertThrows(IllegalArgumentException.class, () -> builder.setNextButton(27, next));
+        builder.setPreviousButton(21, previous).setNextButton(23, next);
+        assertEquals(21, builder.previousSlot);
+        assertSame(previous, builder.previousItem);
+        assertEquals(23, builder.nextSlot);
+        assertSame(next, builder.nextItem);
+    }
+
+    @Test
+    void testSetCacheSize() {
+        assertThrows(IllegalArgumentException.class, () -> builder.setCacheSize(0));
+        builder.setCacheSize(3);
+        assertEquals(3, builder.cacheSize);
+    }
+
+    @Test
+    void testCreate(@Mock JavaPlugin plugin) {
+        // a renderer is required
+        assertThrows(IllegalStateException.class, () -> builder.create(plugin, Collections.emptyList()));
+        final PaginatedMenu<String> menu = builder.setRenderer(s -> null).create(plugin, Collections.emptyList());
+        assertEquals(1, menu.getPageCount());
+        assertEquals(18, menu.getPageSize());
+    }
+
+    @BeforeAll
+    public static void setupFakeServer(@Mock Server server, @Mock PluginManager pluginManager) {
+        // fake name, version, bukkitVersion
+        doReturn("FakeServerTest").when(server).getName();
+        doReturn("1.0").when(server).getVersion();
+        doReturn("fakeBukkitVersion").when(server).getBukkitVersion();
+        // fake plugin manager
+        doReturn(pluginManager).when(server).getPluginManager();
+        // add logger
+        doReturn(Logger.getLogger("Test")).when(server).getLogger();
+        // setup fake server
+        try {
+            final Field serverField = Bukkit.class.getDeclaredField("server");
+            serverField.setAccessible(true);
+            serverField.set(null, server);
+        } catch (NoSuchFieldException | IllegalAccessException e) {
+//            e.printStackTrace();
+        }
+    }
+}
@@ -0,0 +1,329 @@
+package com.github.ms5984.lib.menuman;
+
+import org.bukkit.Bukkit;
+import org.bukkit.Server;
+import org.bukkit.entity.Player;
+import org.bukkit.event.inventory.InventoryCloseEvent;
+import org.bukkit.event.inventory.InventoryOpenEvent;
+import org.bukkit.inventory.Inventory;
+import org.bukkit.inventory.ItemStack;
+import org.bukkit.plugin.PluginManager;
+import org.bukkit.plugin.java.JavaPlugin;
+import org.bukkit.scheduler.BukkitScheduler;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class PaginatedMenuTest {
+    final List<Integer> entries = new ArrayList<>();
+    final AtomicInteger rendered = new AtomicInteger();
+    final ItemStack nextItem = mock(ItemStack.class);
+    final ItemStack previousItem = mock(ItemStack.class);
+
+    PaginatedMenuTest() {
+        for (int i = 0; i < 50; ++i) {
+            entries.add(i);
+        }
+    }
+
+    PaginatedMenu<Integer> create(JavaPlugin plugin, int cacheSize) {
+        return new PaginatedMenuBuilder<Integer>(Menu.InventoryRows.THREE, "Pages")
+                .setRenderer(i -> {
+                    rendered.incrementAndGet();
+                    return mock(ItemStack.class);
+                })
+                .setPreviousButton(18, previousItem)
+                .setNextButton(26, nextItem)
+                .setCacheSize(cacheSize)
+                .create(plugin, entries);
+    }
+
+    @Test
+    void testPages(@Mock JavaPlugin plugin) {
+        final PaginatedMenu<Integer> menu = create(plugin, 8);
+        // 50 entries at 18 per page
+        assertEquals(3, menu.getPageCount());
+        assertThrows(IllegalArgumentException.class, () -> menu.getPage(3));
+        assertThrows(IllegalArgumentException.class, () -> menu.getPage(-1));
+        // only the requested page and its neighbour are rendered, once
+        final Menu page = menu.getPage(2);
+        assertEquals(18 + (50 - 36), rendered.get());
+        assertSame(page, menu.getPage(2));
+        assertEquals(18 + (50 - 36), rendered.get());
+        assertEquals(2, menu.getCachedPageCount());
+    }
+
+    @Test
+    void testNavigation(@Mock JavaPlugin plugin, @Mock Player player) {
+        final PaginatedMenu<Integer> menu = create(plugin, 8);
+        menu.open(player, 0);
+        final ArgumentCaptor<Inventory> captor = ArgumentCaptor.forClass(Inventory.class);
+        verify(player).openInventory(captor.capture());
+        final ArgumentCaptor<ItemStack[]> frameCaptor = ArgumentCaptor.forClass(ItemStack[].class);
+        verify(captor.getValue()).setContents(frameCaptor.capture());
+        // first page: next only
+        final ItemStack[] frame = frameCaptor.getValue();
+        assertNull(frame[18]);
+        assertSame(nextItem, frame[26]);
+        assertNotNull(frame[17]);
+    }
+
+    @Test
+    void testCache(@Mock JavaPlugin plugin) {
+        final PaginatedMenu<Integer> menu = create(plugin, 2);
+        final Menu first = menu.getPage(0);
+        menu.getPage(1);
+        menu.getPage(2);
+        // least recently used page is evicted and disposed
+        assertEquals(2, menu.getCachedPageCount());
+        assertTrue(first.isDisposed());
+        // invalidation drops every page
+        menu.invalidate();
+        assertEquals(0, menu.getCachedPageCount());
+        assertNotSame(first, menu.getPage(0));
+    }
+
+    @Test
+    void testCacheKeepsViewedPages(@Mock JavaPlugin plugin, @Mock Player player1,
+                                   @Mock Player player2, @Mock Player player3) {
+        for (int i = 50; i < 200; ++i) {
+            entries.add(i);
+        }
+        final PaginatedMenu<Integer> menu = new PaginatedMenuBuilder<Integer>(Menu.InventoryRows.THREE, "Pages")
+                .setRenderer(i -> mock(ItemStack.class))
+                .setCacheSize(3)
+                .setPrefetch(false)
+                .create(plugin, entries);
+        // the eldest page is open
+        final Menu first = menu.getPage(0);
+        first.onOpen(openEvent(player1));
+        final Menu second = menu.getPage(1);
+        for (int page = 2; page < 6; ++page) {
+            menu.getPage(page);
+            assertTrue(menu.getCachedPageCount() <= 3);
+        }
+        // unviewed pages behind it are still evicted
+        assertFalse(first.isDisposed());
+        assertSame(first, menu.getPage(0));
+        assertTrue(second.isDisposed());
+        // with every older page open the cache may overflow
+        menu.getPage(1).onOpen(openEvent(player2));
+        menu.getPage(2).onOpen(openEvent(player3));
+        menu.getPage(3);
+        assertEquals(4, menu.getCachedPageCount());
+        // until a viewer leaves, on the next tick
+        first.onClose(closeEvent(player1));
+        assertFalse(first.isDisposed());
+        verify(player1, never()).closeInventory();
+        final ArgumentCaptor<Runnable> trim = ArgumentCaptor.forClass(Runnable.class);
+        verify(Bukkit.getScheduler()).runTask(eq(plugin), trim.capture());
+        trim.getValue().run();
+        assertEquals(3, menu.getCachedPageCount());
+        assertTrue(first.isDisposed());
+    }
+
+    @Test
+    void testAsyncSource(@Mock JavaPlugin plugin, @Mock ItemStack placeholder) {
+        final CompletableFuture<List<Integer>> future = new CompletableFuture<>();
+        final MenuDataSource<Integer> source = new MenuDataSource<Integer>() {
+            @Override
+            public int size() {
+                return 50;
+            }
+
+            @Override
+            public CompletableFuture<List<Integer>> fetch(int offset, int limit) {
+                assertEquals(0, offset);
+                assertEquals(18, limit);
+                return future;
+            }
+        };
+        final PaginatedMenu<Integer> menu = new PaginatedMenuBuilder<Integer>(Menu.InventoryRows.THREE, "Pages")
+                .setRenderer(i -> {
+                    rendered.incrementAndGet();
+                    return mock(ItemStack.class);
+                })
+                .setPlaceholder(placeholder)
+                .setPrefetch(false)
+                .create(plugin, source);
+        // page shows placeholders while loading
+        final Menu page = menu.getPage(0);
+        assertEquals(0, rendered.get());
+        // results are applied in one main thread task
+        future.complete(entries.subList(0, 10));
+        final ArgumentCaptor<Runnable> taskCaptor = ArgumentCaptor.forClass(Runnable.class);
+        verify(Bukkit.getScheduler()).runTask(eq(plugin), taskCaptor.capture());
+        assertEquals(0, rendered.get());
+        taskCaptor.getValue().run();
+        assertEquals(10, rendered.get());
+        assertFalse(page.isDisposed());
+    }
+
+    @Test
+    void testAsyncSourceFailure(@Mock JavaPlugin plugin, @Mock ItemStack placeholder) {
+        doReturn(Logger.getLogger("Test")).when(plugin).getLogger();
+        final AtomicInteger fetches = new AtomicInteger();
+        final MenuDataSource<Integer> source = new MenuDataSource<Integer>() {
+            @Override
+            public int size() {
+                return 50;
+            }
+
+            @Override
+            public CompletableFuture<List<Integer>> fetch(int offset, int limit) {
+                fetches.incrementAndGet();
+                final CompletableFuture<List<Integer>> failed = new CompletableFuture<>();
+                failed.completeExceptionally(new IllegalStateException("Source offline"));
+                return failed;
+            }
+        };
+        final PaginatedMenu<Integer> menu = new PaginatedMenuBuilder<Integer>(Menu.InventoryRows.THREE, "Pages")
+                .setRenderer(i -> mock(ItemStack.class))
+                .setPlaceholder(placeholder)
+                .setPrefetch(false)
+                .create(plugin, source);
+        final Menu page = menu.getPage(0);
+        assertEquals(1, fetches.get());
+        final ArgumentCaptor<Runnable> taskCaptor = ArgumentCaptor.forClass(Runnable.class);
+        verify(Bukkit.getScheduler()).runTask(eq(plugin), taskCaptor.capture());
+        taskCaptor.getValue().run();
+        // the broken page is dropped, not cached
+        assertEquals(0, menu.getCachedPageCount());
+        assertTrue(page.isDisposed());
+        // and fetched again when next shown
+        assertNotSame(page, menu.getPage(0));
+        assertEquals(2, fetches.get());
+    }
+
+    @Test
+    void testFilterAndSort(@Mock JavaPlugin plugin, @Mock Player player) {
+        final List<Integer> shown = new ArrayList<>();
+        final PaginatedMenu<Integer> menu = new PaginatedMenuBuilder<Integer>(Menu.InventoryRows.THREE, "Pages")
+                .setRenderer(i -> {
+                    shown.add(i);
+                    return mock(ItemStack.class);
+                })
+                .setSearchText(String::valueOf)
+                .addSort("descending", Comparator.reverseOrder())
+                .setPrefetch(false)
+                .create(plugin, entries);
+        assertThrows(IllegalArgumentException.class, () -> menu.sortBy("missing"));
+        // viewed page is rendered again in place
+        final Menu page = menu.getPage(0);
+        page.onOpen(openEvent(player));
+        shown.clear();
+        menu.filter("4");
+        assertEquals("4", menu.getFilter());
+        assertEquals(11, menu.getEntryCount());
+        assertEquals(1, menu.getPageCount());
+        assertSame(page, menu.getPage(0));
+        assertEquals(Arrays.asList(4, 40, 41, 42, 43, 44, 45, 46, 47, 48, 49), shown);
+        // sort within the filter
+        shown.clear();
+        menu.sortBy("descending");
+        assertEquals(Arrays.asList(49, 48, 47, 46, 45, 44, 43, 42, 41, 40, 4), shown);
+        // clearing the filter keeps the order
+        shown.clear();
+        menu.filter(null);
+        assertEquals(50, menu.getEntryCount());
+        assertEquals(49, (int) shown.get(0));
+        assertEquals(32, (int) shown.get(17));
+    }
+
+    @Test
+    void testFilterClampsViewedPages(@Mock JavaPlugin plugin, @Mock Player player1, @Mock Player player2) {
+        doReturn(UUID.randomUUID()).when(player2).getUniqueId();
+        final PaginatedMenu<Integer> menu = new PaginatedMenuBuilder<Integer>(Menu.InventoryRows.THREE, "Pages")
+                .setRenderer(i -> mock(ItemStack.class))
+                .setSearchText(String::valueOf)
+                .setPrefetch(false)
+                .create(plugin, entries);
+        menu.open(player1, 0);
+        final Menu first = menu.getPage(0);
+        first.onOpen(openEvent(player1));
+        menu.open(player2, 1);
+        final Menu second = menu.getPage(1);
+        second.onOpen(openEvent(player2));
+        // both viewed pages clamp to the only page left
+        menu.filter("4");
+        assertEquals(1, menu.getPageCount());
+        assertEquals(1, menu.getCachedPageCount());
+        assertSame(first, menu.getPage(0));
+        assertFalse(second.isDisposed());
+        // its viewer is moved to the kept page
+        DeferredActions.get().run();
+        verify(player2, times(2)).openInventory(any(Inventory.class));
+        // and the detached page goes once left
+        second.onClose(closeEvent(player2));
+        final ArgumentCaptor<Runnable> trim = ArgumentCaptor.forClass(Runnable.class);
+        // scheduled after the deferred open
+        verify(Bukkit.getScheduler(), times(2)).runTask(eq(plugin), trim.capture());
+        trim.getValue().run();
+        assertTrue(second.isDisposed());
+        assertFalse(first.isDisposed());
+    }
+
+    @Test
+    void testSearchRequiresList(@Mock JavaPlugin plugin, @Mock MenuDataSource<Integer> source) {
+        final PaginatedMenu<Integer> menu = new PaginatedMenuBuilder<Integer>(Menu.InventoryRows.THREE, "Pages")
+                .setRenderer(i -> null)
+                .create(plugin, source);
+        assertThrows(IllegalStateException.class, () -> menu.filter("x"));
+        assertThrows(IllegalStateException.class, () -> menu.sortBy(null));
+    }
+
+    InventoryOpenEvent openEvent(Player player) {
+        final InventoryOpenEvent event = mock(InventoryOpenEvent.class);
+        doReturn(player).when(event).getPlayer();
+        return event;
+    }
+
+    InventoryCloseEvent closeEvent(Player player) {
+        final InventoryCloseEvent event = mock(InventoryCloseEvent.class);
+        doReturn(player).when(event).getPlayer();
+        return event;
+    }
+
+    @BeforeAll
+    public static void setupFakeServer(@Mock Server server,
+                                       @Mock PluginManager pluginManager,
+                                       @Mock BukkitScheduler scheduler) {
+        // fake name, version, bukkitVersion
+        doReturn("FakeServerTest").when(server).getName();
+        doReturn("1.0").when(server).getVersion();
+        doReturn("fakeBukkitVersion").when(server).getBukkitVersion();
+        // fake plugin manager
+        doReturn(pluginManager).when(server).getPluginManager();
+        // fake scheduler
+        doReturn(scheduler).when(server).getScheduler();
+        // add logger
+        doReturn(Logger.getLogger("Test")).when(server).getLogger();
+        // setup fake server
+        try {
+            final Field serverField = Bukkit.class.getDeclaredField("server");
+            serverField.setAccessible(true);
+            serverField.set(null, server);
+        } catch (NoSuchFieldException | IllegalAccessException e) {
+//            e.printStackTrace();
+        }
+        // fake createInventory (a new inventory each call)
+        doAnswer(invocationOnMock -> mock(Inventory.class)).when(server).createInventory(any(MenuHolder.class), anyInt(), anyString());
+    }
+}
@@ -0,0 +1,75 @@
+package com.github.ms5984.lib.menuman;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SearchIndexTest {
+    final SearchIndex index = new SearchIndex(new String[]{
+            "Diamond Sword", "§bdiamond pickaxe", "Iron Sword", null, "Wooden Axe"
+    });
+
+    boolean matches(long[] matches, int entry) {
+        return (matches[entry >>> 6] & (1L << entry)) != 0L;
+    }
+
+    int count(long[] matches) {
+        int count = 0;
+        for (long word : matches) {
+            count += Long.bitCount(word);
+        }
+        return count;
+    }
+
+    @Test
+    void testSubstring() {
+        // case-insensitive, color codes ignored
+        final long[] sword = index.match("SWORD");
+        assertEquals(2, count(sword));
+        assertTrue(matches(sword, 0));
+        assertTrue(matches(sword, 2));
+        // trigrams must appear together
+        assertEquals(1, count(index.match("pickaxe")));
+        assertEquals(2, count(index.match("axe")));
+        assertEquals(0, count(index.match("sword axe")));
+        assertEquals(0, count(index.match("zzz")));
+    }
+
+    @Test
+    void testPrefix() {
+        // short queries match the start of the text
+        final long[] di = index.match("di");
+        assertEquals(2, count(di));
+        assertTrue(matches(di, 1));
+        assertEquals(0, count(index.match("rd")));
+        // empty query matches everything
+        assertEquals(index.size(), count(index.match(" ")));
+    }
+
+    @Test
+    void testSortIndexes() {
+        final Random random = new Random(42);
+        final int[] keys = new int[1000];
+        for (int i = 0; i < keys.length; ++i) {
+            keys[i] = random.nextInt(50);
+        }
+        final int[] order = SearchIndex.sortIndexes(keys.length, (a, b) -> Integer.compare(keys[a], keys[b]));
+        assertEquals(keys.length, order.length);
+        for (int j = 1; j < order.length; ++j) {
+            final int previous = order[j - 1];
+            final int next = order[j];
+            assertTrue(keys[previous] <= keys[next]);
+            // equal keys keep their order
+            if (keys[previous] == keys[next]) assertTrue(previous < next);
+        }
+        assertEquals(0, SearchIndex.sortIndexes(0, (a, b) -> 0).length);
+    }
+
+    @Test
+    void testNormalize() {
+        assertEquals("", SearchIndex.normalize(null));
+        assertEquals("gold", SearchIndex.normalize("§6 Gold "));
+    }
+}
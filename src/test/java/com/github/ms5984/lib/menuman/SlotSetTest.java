@@ -0,0 +1,98 @@
+package com.github.ms5984.lib.menuman;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.HashSet;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SlotSetTest {
+
+    @Test
+    void testOf() {
+        final SlotSet slotSet = SlotSet.of(0, 13, 53);
+        assertEquals(3, slotSet.size());
+        assertTrue(slotSet.contains(0));
+        assertTrue(slotSet.contains(13));
+        assertTrue(slotSet.contains(53));
+        assertFalse(slotSet.contains(1));
+        // out of range is never contained
+        assertFalse(slotSet.contains(-999));
+        assertFalse(slotSet.contains(64));
+        // test empty
+        assertTrue(SlotSet.of().isEmpty());
+        assertSame(SlotSet.empty(), SlotSet.of());
+        // test invalid slots
+        assertThrows(IllegalArgumentException.class, () -> SlotSet.of(-1));
+        assertThrows(IllegalArgumentException.class, () -> SlotSet.of(SlotSet.MAX_SLOTS));
+    }
+
+    @Test
+    void testRange() {
+        assertArrayEquals(new int[]{3, 4, 5}, SlotSet.range(3, 6).toArray());
+        assertTrue(SlotSet.range(4, 4).isEmpty());
+        assertEquals(SlotSet.MAX_SLOTS, SlotSet.range(0, SlotSet.MAX_SLOTS).size());
+        assertThrows(IllegalArgumentException.class, () -> SlotSet.range(5, 4));
+        assertThrows(IllegalArgumentException.class, () -> SlotSet.range(0, SlotSet.MAX_SLOTS + 1));
+    }
+
+    @Test
+    void testAll() {
+        for (Menu.InventoryRows rows : Menu.InventoryRows.values()) {
+            final SlotSet all = SlotSet.all(rows);
+            assertEquals(rows.slotCount, all.size());
+            assertEquals(0, all.first());
+            assertEquals(rows.slotCount - 1, all.last());
+        }
+    }
+
+    @Test
+    void testRowAndColumn() {
+        assertArrayEquals(new int[]{9, 10, 11, 12, 13, 14, 15, 16, 17}, SlotSet.row(1).toArray());
+        assertArrayEquals(new int[]{4, 13, 22}, SlotSet.column(4, Menu.InventoryRows.THREE).toArray());
+        assertThrows(IllegalArgumentException.class, () -> SlotSet.row(6));
+        assertThrows(IllegalArgumentException.class, () -> SlotSet.column(9, Menu.InventoryRows.ONE));
+    }
+
+    @Test
+    void testBorder() {
+        final SlotSet border = SlotSet.border(Menu.InventoryRows.THREE);
+        assertEquals(20, border.size());
+        // middle row keeps only its edges
+        assertTrue(border.contains(9));
+        assertTrue(border.contains(17));
+        assertFalse(border.contains(13));
+        // one row is all border
+        assertEquals(SlotSet.all(Menu.InventoryRows.ONE), SlotSet.border(Menu.InventoryRows.ONE));
+    }
+
+    @Test
+    void testAlgebra() {
+        final SlotSet a = SlotSet.of(1, 2, 3);
+        final SlotSet b = SlotSet.of(3, 4);
+        assertEquals(SlotSet.of(1, 2, 3, 4), a.union(b));
+        assertEquals(SlotSet.of(3), a.intersection(b));
+        assertEquals(SlotSet.of(1, 2), a.difference(b));
+        assertTrue(a.intersects(b));
+        assertFalse(a.intersects(SlotSet.of(5)));
+        assertEquals(SlotSet.range(4, 9).with(0), a.complement(Menu.InventoryRows.ONE));
+        assertEquals(SlotSet.of(1, 2), a.without(3));
+        assertSame(a, a.without(8));
+    }
+
+    @Test
+    void testOfRawSlots() {
+        // raw slots at or above the limit belong to the lower inventory
+        final SlotSet top = SlotSet.ofRawSlots(new HashSet<>(Arrays.asList(2, 8, 9, 40)), 9);
+        assertEquals(SlotSet.of(2, 8), top);
+    }
+
+    @Test
+    void testForEach() {
+        final StringBuilder sb = new StringBuilder();
+        SlotSet.of(7, 0, 63).forEach(slot -> sb.append(slot).append(' '));
+        assertEquals("0 7 63 ", sb.toString());
+        assertEquals("SlotSet[0, 7, 63]", SlotSet.of(7, 0, 63).toString());
+    }
+}